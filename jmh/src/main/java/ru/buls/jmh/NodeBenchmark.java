@@ -0,0 +1,73 @@
+package ru.buls.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import ru.buls.jmh.model.PCustomer;
+import ru.buls.jmh.model.PLedger;
+import ru.buls.jmh.model.SCustomer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the generated metadata nodes: construction of a narrow ({@code PCustomer}, 7 properties)
+ * and a wide ({@code PLedger}, 25 properties) node, static navigation, {@code w()} and {@code toString()}
+ * below a chain of {@code depth} nested nodes. Run with {@code -prof gc} for the allocation rate.
+ * Only the node API is used, so the benchmarks compile with any processor options.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NodeBenchmark {
+    /**
+     * number of the nested nodes above the measured one
+     */
+    @Param({"1", "3", "6"})
+    public int depth;
+
+    private PCustomer node;
+
+    @Setup
+    public void setUp() {
+        node = navigate(depth);
+    }
+
+    private static PCustomer navigate(int depth) {
+        PCustomer node = SCustomer.manager();
+        for (int i = 1; i < depth; i++) node = node.manager();
+        return node;
+    }
+
+    @Benchmark
+    public PCustomer staticNavigation() {
+        return navigate(depth);
+    }
+
+    @Benchmark
+    public String leafPath() {
+        return navigate(depth).address().country().toString();
+    }
+
+    @Benchmark
+    public PCustomer constructNarrow() {
+        return new PCustomer(SCustomer.manager, node);
+    }
+
+    @Benchmark
+    public PLedger constructWide() {
+        return new PLedger(SCustomer.ledger, node);
+    }
+
+    @Benchmark
+    public String w() {
+        return node.w(SCustomer.name);
+    }
+
+    @Benchmark
+    public String toStringCached() {
+        return node.toString();
+    }
+
+    @Benchmark
+    public String toStringFresh() {
+        return new PCustomer(SCustomer.manager, node).toString();
+    }
+}
@@ -0,0 +1,232 @@
+package ru.buls.jmh.model;
+
+/**
+ * wide bean, the metadata node of it initializes a path per property
+ */
+public class Ledger {
+    private long entry1;
+    private String entry2;
+    private int entry3;
+    private boolean entry4;
+    private String entry5;
+    private String entry6;
+    private long entry7;
+    private String entry8;
+    private int entry9;
+    private boolean entry10;
+    private String entry11;
+    private String entry12;
+    private long entry13;
+    private String entry14;
+    private int entry15;
+    private boolean entry16;
+    private String entry17;
+    private String entry18;
+    private long entry19;
+    private String entry20;
+    private int entry21;
+    private boolean entry22;
+    private String entry23;
+    private String entry24;
+    private Customer owner;
+
+    public long getEntry1() {
+        return entry1;
+    }
+
+    public void setEntry1(long entry1) {
+        this.entry1 = entry1;
+    }
+
+    public String getEntry2() {
+        return entry2;
+    }
+
+    public void setEntry2(String entry2) {
+        this.entry2 = entry2;
+    }
+
+    public int getEntry3() {
+        return entry3;
+    }
+
+    public void setEntry3(int entry3) {
+        this.entry3 = entry3;
+    }
+
+    public boolean isEntry4() {
+        return entry4;
+    }
+
+    public void setEntry4(boolean entry4) {
+        this.entry4 = entry4;
+    }
+
+    public String getEntry5() {
+        return entry5;
+    }
+
+    public void setEntry5(String entry5) {
+        this.entry5 = entry5;
+    }
+
+    public String getEntry6() {
+        return entry6;
+    }
+
+    public void setEntry6(String entry6) {
+        this.entry6 = entry6;
+    }
+
+    public long getEntry7() {
+        return entry7;
+    }
+
+    public void setEntry7(long entry7) {
+        this.entry7 = entry7;
+    }
+
+    public String getEntry8() {
+        return entry8;
+    }
+
+    public void setEntry8(String entry8) {
+        this.entry8 = entry8;
+    }
+
+    public int getEntry9() {
+        return entry9;
+    }
+
+    public void setEntry9(int entry9) {
+        this.entry9 = entry9;
+    }
+
+    public boolean isEntry10() {
+        return entry10;
+    }
+
+    public void setEntry10(boolean entry10) {
+        this.entry10 = entry10;
+    }
+
+    public String getEntry11() {
+        return entry11;
+    }
+
+    public void setEntry11(String entry11) {
+        this.entry11 = entry11;
+    }
+
+    public String getEntry12() {
+        return entry12;
+    }
+
+    public void setEntry12(String entry12) {
+        this.entry12 = entry12;
+    }
+
+    public long getEntry13() {
+        return entry13;
+    }
+
+    public void setEntry13(long entry13) {
+        this.entry13 = entry13;
+    }
+
+    public String getEntry14() {
+        return entry14;
+    }
+
+    public void setEntry14(String entry14) {
+        this.entry14 = entry14;
+    }
+
+    public int getEntry15() {
+        return entry15;
+    }
+
+    public void setEntry15(int entry15) {
+        this.entry15 = entry15;
+    }
+
+    public boolean isEntry16() {
+        return entry16;
+    }
+
+    public void setEntry16(boolean entry16) {
+        this.entry16 = entry16;
+    }
+
+    public String getEntry17() {
+        return entry17;
+    }
+
+    public void setEntry17(String entry17) {
+        this.entry17 = entry17;
+    }
+
+    public String getEntry18() {
+        return entry18;
+    }
+
+    public void setEntry18(String entry18) {
+        this.entry18 = entry18;
+    }
+
+    public long getEntry19() {
+        return entry19;
+    }
+
+    public void setEntry19(long entry19) {
+        this.entry19 = entry19;
+    }
+
+    public String getEntry20() {
+        return entry20;
+    }
+
+    public void setEntry20(String entry20) {
+        this.entry20 = entry20;
+    }
+
+    public int getEntry21() {
+        return entry21;
+    }
+
+    public void setEntry21(int entry21) {
+        this.entry21 = entry21;
+    }
+
+    public boolean isEntry22() {
+        return entry22;
+    }
+
+    public void setEntry22(boolean entry22) {
+        this.entry22 = entry22;
+    }
+
+    public String getEntry23() {
+        return entry23;
+    }
+
+    public void setEntry23(String entry23) {
+        this.entry23 = entry23;
+    }
+
+    public String getEntry24() {
+        return entry24;
+    }
+
+    public void setEntry24(String entry24) {
+        this.entry24 = entry24;
+    }
+
+    public Customer getOwner() {
+        return owner;
+    }
+
+    public void setOwner(Customer owner) {
+        this.owner = owner;
+    }
+}
@@ -0,0 +1,216 @@
+package ru.buls.bench;
+
+import ru.buls.BeanMetadataGenerator;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.*;
+
+/**
+ * Runs {@link BeanMetadataGenerator} by the in-process java compiler over a {@link SyntheticModel}
+ * and reports processing time, generated files, bytes written and peak heap.
+ * <p/>
+ * Arguments: {@code --beans=500 --depth=3 --fanOut=2 --properties=10 --mixins=4 --selfReferences=true
+ * --packages=5 --warmup=2 --iterations=5 --compile=false}, any {@code -Aname=value} is passed to the processor.
+ */
+public class ProcessorBenchmark {
+    private final SyntheticModel model = new SyntheticModel();
+    private final List<String> processorOptions = new ArrayList<String>();
+    private int warmup = 2;
+    private int iterations = 5;
+    private boolean compile = false;
+
+    public static void main(String[] args) throws Exception {
+        ProcessorBenchmark benchmark = new ProcessorBenchmark();
+        benchmark.parse(args);
+        benchmark.run();
+    }
+
+    void parse(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("-A")) {
+                processorOptions.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) throw new IllegalArgumentException("unknown argument " + arg);
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if (name.equals("beans")) model.beans = Integer.parseInt(value);
+            else if (name.equals("depth")) model.depth = Integer.parseInt(value);
+            else if (name.equals("fanOut")) model.fanOut = Integer.parseInt(value);
+            else if (name.equals("properties")) model.properties = Integer.parseInt(value);
+            else if (name.equals("mixins")) model.mixins = Integer.parseInt(value);
+            else if (name.equals("selfReferences")) model.selfReferences = Boolean.parseBoolean(value);
+            else if (name.equals("packages")) model.packages = Integer.parseInt(value);
+            else if (name.equals("warmup")) warmup = Integer.parseInt(value);
+            else if (name.equals("iterations")) iterations = Integer.parseInt(value);
+            else if (name.equals("compile")) compile = Boolean.parseBoolean(value);
+            else throw new IllegalArgumentException("unknown argument " + arg);
+        }
+    }
+
+    void run() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) throw new IllegalStateException("no system java compiler, run on a JDK");
+
+        File work = createTempDir("bean-metadata-bench");
+        try {
+            File src = new File(work, "src");
+            List<File> sources = model.write(src);
+            System.out.println("model: " + model + ", sources: " + sources.size()
+                    + ", options: " + processorOptions + ", compile: " + compile);
+
+            long[] processing = new long[iterations];
+            for (int i = -warmup; i < iterations; i++) {
+                Result result = iteration(compiler, sources, new File(work, "out" + i));
+                if (i >= 0) processing[i] = result.processingNanos;
+                System.out.println((i < 0 ? "warmup " : "iteration ") + (i < 0 ? i + warmup : i) + ": " + result);
+            }
+            Arrays.sort(processing);
+            System.out.println("median processing: " + millis(processing[iterations / 2]) + " ms");
+        } finally {
+            delete(work);
+        }
+    }
+
+    Result iteration(JavaCompiler compiler, List<File> sources, File out) throws IOException {
+        File gen = new File(out, "gen");
+        File classes = new File(out, "classes");
+        if (!gen.mkdirs() || !classes.mkdirs()) throw new IOException("cannot create " + out);
+
+        List<String> options = new ArrayList<String>();
+        options.add("-Ainclude=" + SyntheticModel.PACKAGE);
+        options.addAll(processorOptions);
+        options.addAll(Arrays.asList("-s", gen.getPath(), "-d", classes.getPath(), "-nowarn"));
+        if (!compile) options.add("-proc:only");
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        TimedGenerator processor = new TimedGenerator();
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(processor));
+
+            System.gc();
+            resetPeakUsage();
+            long start = System.nanoTime();
+            boolean success = task.call();
+            long total = System.nanoTime() - start;
+            if (!success) {
+                for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics())
+                    if (d.getKind() == Diagnostic.Kind.ERROR) System.err.println(d);
+                throw new IllegalStateException("compilation failed");
+            }
+
+            Result result = new Result();
+            result.processingNanos = processor.nanos;
+            result.totalNanos = total;
+            result.peakHeap = peakUsage();
+            count(gen, result);
+            return result;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    static class Result {
+        long processingNanos;
+        long totalNanos;
+        int files;
+        long bytes;
+        long peakHeap;
+
+        @Override
+        public String toString() {
+            return "processing " + millis(processingNanos) + " ms, compilation " + millis(totalNanos) + " ms, "
+                    + files + " files, " + bytes + " bytes, peak heap " + (peakHeap >> 20) + " MB";
+        }
+    }
+
+    /**
+     * measures the time spent in the processor itself
+     */
+    static class TimedGenerator implements Processor {
+        private final BeanMetadataGenerator delegate = new BeanMetadataGenerator();
+        long nanos;
+
+        public Set<String> getSupportedOptions() {
+            return delegate.getSupportedOptions();
+        }
+
+        public Set<String> getSupportedAnnotationTypes() {
+            return delegate.getSupportedAnnotationTypes();
+        }
+
+        public SourceVersion getSupportedSourceVersion() {
+            return delegate.getSupportedSourceVersion();
+        }
+
+        public void init(ProcessingEnvironment processingEnv) {
+            delegate.init(processingEnv);
+        }
+
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            long start = System.nanoTime();
+            try {
+                return delegate.process(annotations, roundEnv);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        public Iterable<? extends Completion> getCompletions(Element element, AnnotationMirror annotation,
+                                                             ExecutableElement member, String userText) {
+            return delegate.getCompletions(element, annotation, member, userText);
+        }
+    }
+
+    private static void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+    }
+
+    private static long peakUsage() {
+        long result = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) result += pool.getPeakUsage().getUsed();
+        return result;
+    }
+
+    private static void count(File file, Result result) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) count(child, result);
+        else if (file.isFile()) {
+            result.files++;
+            result.bytes += file.length();
+        }
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000;
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("cannot create " + dir);
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.buls.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the sources of a synthetic bean model.
+ * The model is fully defined by its parameters, so runs with the same parameters are comparable.
+ */
+public class SyntheticModel {
+    public static final String PACKAGE = "bench.model";
+
+    /**
+     * number of bean classes
+     */
+    int beans = 500;
+    /**
+     * length of the superclass chains
+     */
+    int depth = 3;
+    /**
+     * number of nested bean properties per bean
+     */
+    int fanOut = 2;
+    /**
+     * number of plain properties per bean
+     */
+    int properties = 10;
+    /**
+     * number of interfaces the beans implement, one per bean in turn
+     */
+    int mixins = 4;
+    /**
+     * every bean has a property of its own type
+     */
+    boolean selfReferences = true;
+    /**
+     * number of packages the beans are spread over
+     */
+    int packages = 5;
+
+    public List<File> write(File dir) throws IOException {
+        List<File> result = new ArrayList<File>();
+        for (int m = 0; m < mixins; m++) {
+            StringBuilder src = new StringBuilder();
+            src.append("package ").append(packageName(m)).append(";\n\n");
+            src.append("public interface Mixin").append(m).append(" {\n");
+            src.append("    String getMixin").append(m).append("Value();\n");
+            src.append("}\n");
+            result.add(write(dir, packageName(m), "Mixin" + m, src));
+        }
+        for (int b = 0; b < beans; b++) {
+            String pkg = packageName(b);
+            String name = "Bean" + b;
+            StringBuilder src = new StringBuilder();
+            src.append("package ").append(pkg).append(";\n\n");
+            src.append("public class ").append(name);
+            if (depth > 1 && b % depth != 0) src.append(" extends ").append(qualifiedName(b - 1));
+            int mixin = mixins > 0 ? b % mixins : -1;
+            if (mixin >= 0) src.append(" implements ").append(packageName(mixin)).append(".Mixin").append(mixin);
+            src.append(" {\n");
+            for (int p = 0; p < properties; p++) {
+                String type = p % 3 == 0 ? "int" : p % 3 == 1 ? "boolean" : "String";
+                property(src, type, "b" + b + "p" + p, type.equals("boolean"));
+            }
+            for (int f = 0; f < fanOut; f++) property(src, qualifiedName((b * 7 + f + 1) % beans), "b" + b + "ref" + f, false);
+            if (selfReferences) property(src, name, "b" + b + "self", false);
+            if (mixin >= 0)
+                src.append("    public String getMixin").append(mixin).append("Value() { return null; }\n");
+            src.append("}\n");
+            result.add(write(dir, pkg, name, src));
+        }
+        return result;
+    }
+
+    private static void property(StringBuilder src, String type, String name, boolean isBoolean) {
+        String cap = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        src.append("    private ").append(type).append(" ").append(name).append(";\n");
+        src.append("    public ").append(type).append(isBoolean ? " is" : " get").append(cap)
+                .append("() { return ").append(name).append("; }\n");
+        src.append("    public void set").append(cap).append("(").append(type).append(" value) { ")
+                .append(name).append(" = value; }\n");
+    }
+
+    private String packageName(int index) {
+        return PACKAGE + (index % Math.max(packages, 1));
+    }
+
+    private String qualifiedName(int bean) {
+        return packageName(bean) + ".Bean" + bean;
+    }
+
+    private static File write(File dir, String pkg, String name, CharSequence src) throws IOException {
+        File pkgDir = new File(dir, pkg.replace('.', File.separatorChar));
+        if (!pkgDir.isDirectory() && !pkgDir.mkdirs()) throw new IOException("cannot create " + pkgDir);
+        File file = new File(pkgDir, name + ".java");
+        Writer writer = new FileWriter(file);
+        try {
+            writer.append(src);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    @Override
+    public String toString() {
+        return "beans=" + beans + ", depth=" + depth + ", fanOut=" + fanOut + ", properties=" + properties
+                + ", mixins=" + mixins + ", selfReferences=" + selfReferences + ", packages=" + packages;
+    }
+}
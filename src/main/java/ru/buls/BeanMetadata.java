@@ -0,0 +1,16 @@
+package ru.buls;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a bean or a package (in package-info.java) to generate metadata for.
+ * Used with the optIn processor option, then javac passes only the marked elements to the processor.
+ * Kept in the class files, so the incremental compilation of Gradle passes them to the processor again.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target({ElementType.TYPE, ElementType.PACKAGE})
+public @interface BeanMetadata {
+}
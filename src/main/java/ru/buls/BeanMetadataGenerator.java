@@ -4,11 +4,16 @@ package ru.buls;
 import javax.annotation.processing.*;
 import javax.lang.model.element.*;
 import javax.lang.model.type.*;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
 import javax.tools.JavaFileObject;
-import java.io.BufferedWriter;
+import java.io.CharArrayWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static java.lang.Boolean.TRUE;
 import static java.lang.Character.isUpperCase;
@@ -20,6 +25,7 @@ import static javax.lang.model.element.Modifier.PUBLIC;
 import static javax.lang.model.element.Modifier.STATIC;
 import static javax.lang.model.type.TypeKind.BOOLEAN;
 import static javax.tools.Diagnostic.Kind.WARNING;
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
 
 /**
  * Created by alexander on 14.09.14.
@@ -30,21 +36,87 @@ public class BeanMetadataGenerator extends AbstractProcessor {
     public static final String PREFIX = "P";
     public static final String INTERFACE_PREFIX = "IP";
     public static final String STATIC_PREFIX = "S";
-    private static final String WRAP_METHOD = "w";
+    public static final String ACCESSOR_PREFIX = "A";
+    public static final String DIRTY_PREFIX = "D";
+    private static final String WRAP_METHOD = MetadataRenderer.WRAP_METHOD;
     private static final String _PREFIX = "_PREFIX";
     private static final String PARENT = "parent";
+    private static final String FULL_PATH = MetadataRenderer.FULL_PATH;
     private String intend = "    ";
-    private static final String JAVA_LANG = "javax.metadata";
+    private static final String JAVA_LANG = MetadataRenderer.JAVA_LANG;
+    private static final String ACCESSOR = MetadataRenderer.ACCESSOR;
+    private static final String ACCESSOR_METHOD = MetadataRenderer.ACCESSOR_METHOD;
+    private static final String GETTER = MetadataRenderer.GETTER;
+    private static final String PATH_REGISTRY = MetadataRenderer.PATH_REGISTRY;
+    private static final String PATH_ID = MetadataRenderer.PATH_ID;
+    private static final String NESTED_METHOD = MetadataRenderer.NESTED_METHOD;
+    private static final String MATCHES_METHOD = MetadataRenderer.MATCHES_METHOD;
+    private static final String CLOSING_METHOD = MetadataRenderer.CLOSING_METHOD;
+    private static final String INDEX_METHOD = MetadataRenderer.INDEX_METHOD;
+    private static final String PROPERTY_READER = "PropertyReader";
+    private static final String PROPERTY_RESOLVER = "PropertyResolver";
+    private static final String REFLECTIVE_RESOLVER = "ReflectiveResolver";
+    private static final String CACHING_RESOLVER = "CachingResolver";
+    private static final String PROJECTION = "Projection";
+    private static final String TRACKED = MetadataRenderer.TRACKED;
+    /**
+     * class output resource of the report option
+     */
+    public static final String REPORT = "META-INF/bean-metadata/report.json";
+    private static final String INDEXED_METHOD = MetadataRenderer.INDEXED_METHOD;
+    private static final String MAPPED_METHOD = MetadataRenderer.MAPPED_METHOD;
 
     String filter = null;
     private Collection<String> include;
     private Collection<String> exclude;
+    private PackageMatcher includeMatcher;
+    private PackageMatcher excludeMatcher;
+    private boolean optIn = false;
     private boolean checkSuperclass = false;
     private String prefix = PREFIX;
     private String staticPrefix = STATIC_PREFIX;
     private String interfacePrefix = INTERFACE_PREFIX;
-
-    private Map<String, TypeElement> generated = new HashMap<String, TypeElement>();
+    private boolean lazyPaths = false;
+    private boolean parsers = false;
+    private boolean cacheChildren = false;
+    private int pathConstantsDepth = 1;
+    private boolean accessors = false;
+    private String accessorPrefix = ACCESSOR_PREFIX;
+    private boolean dirtyTracking = false;
+    private String dirtyPrefix = DIRTY_PREFIX;
+    private int threads = 1;
+    private boolean pathIds = false;
+    private MetadataRenderer renderer;
+    /**
+     * not null if the metadata classes are written as class files
+     */
+    private BytecodeRenderer bytecodeRenderer;
+    /**
+     * not null if the bean index is written and the upstream indexes are read
+     */
+    private MetadataIndex metadataIndex;
+    /**
+     * beans of the current round, the other ones may be linked by the upstream index
+     */
+    private Set<? extends Element> roundElements;
+    private GenerationReport report;
+    /**
+     * statistics of the current round, null if the report is off
+     */
+    private GenerationReport.Round round;
+    /**
+     * classes skipped in the current round, they are reported by a summary
+     */
+    private final Set<String> filteredOut = new TreeSet<String>();
+    private final Set<String> excludedOut = new TreeSet<String>();
+
+    /**
+     * qualified names of the generated classes, kept between rounds to skip them as root elements
+     */
+    private Set<String> generated = new HashSet<String>();
+    private boolean baseGenerated = false;
+    private PropertyIndex index;
+    private final SourceWriter sourceWriter = new SourceWriter(intend);
 
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
@@ -54,6 +126,9 @@ public class BeanMetadataGenerator extends AbstractProcessor {
 
         include = getFilter("include", options);
         exclude = getFilter("exclude", options);
+        includeMatcher = new PackageMatcher(include);
+        excludeMatcher = new PackageMatcher(exclude);
+        optIn = TRUE.toString().equals(options.get("optIn"));
 
         checkSuperclass = TRUE.toString().equals(options.get("checkSuperclass"));
 
@@ -63,6 +138,35 @@ public class BeanMetadataGenerator extends AbstractProcessor {
         if (staticPrefix == null) staticPrefix = STATIC_PREFIX;
         interfacePrefix = options.get("interfacePrefix");
         if (interfacePrefix == null) interfacePrefix = INTERFACE_PREFIX;
+
+        lazyPaths = TRUE.toString().equals(options.get("lazyPaths"));
+        cacheChildren = TRUE.toString().equals(options.get("cacheChildren"));
+        parsers = TRUE.toString().equals(options.get("parsers"));
+        String depth = options.get("pathConstantsDepth");
+        if (depth != null) pathConstantsDepth = Integer.parseInt(depth.trim());
+
+        accessors = TRUE.toString().equals(options.get("accessors"));
+        accessorPrefix = options.get("accessorPrefix");
+        if (accessorPrefix == null) accessorPrefix = ACCESSOR_PREFIX;
+        dirtyTracking = TRUE.toString().equals(options.get("dirtyTracking"));
+        dirtyPrefix = options.get("dirtyPrefix");
+        if (dirtyPrefix == null) dirtyPrefix = DIRTY_PREFIX;
+
+        pathIds = TRUE.toString().equals(options.get("pathIds"));
+
+        String threads = options.get("threads");
+        if (threads != null) this.threads = Math.max(1, Integer.parseInt(threads.trim()));
+
+        if (TRUE.toString().equals(options.get("report"))) report = new GenerationReport();
+        if (TRUE.toString().equals(options.get("index"))) metadataIndex = new MetadataIndex(processingEnv.getFiler());
+
+        renderer = new MetadataRenderer(lazyPaths, cacheChildren, parsers);
+        if (TRUE.toString().equals(options.get("bytecode"))) {
+            if (lazyPaths || cacheChildren || accessors || parsers || dirtyTracking)
+                warning("bytecode is not supported with lazyPaths, cacheChildren, accessors, parsers or dirtyTracking, "
+                        + "sources are generated");
+            else bytecodeRenderer = new BytecodeRenderer();
+        }
     }
 
     private String getStaticPrefix() {
@@ -88,64 +192,211 @@ public class BeanMetadataGenerator extends AbstractProcessor {
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
+        if (optIn) return new HashSet<String>(asList(BeanMetadata.class.getName()));
         return (filter != null)
                 ? new HashSet<String>(asList(filter))
                 : super.getSupportedAnnotationTypes();
     }
 
+    @Override
+    public Set<String> getSupportedOptions() {
+        return new HashSet<String>(asList("filter", "include", "exclude", "checkSuperclass",
+                "prefix", "staticPrefix", "interfacePrefix", "lazyPaths", "cacheChildren", "parsers", "pathConstantsDepth",
+                "accessors", "accessorPrefix", "dirtyTracking", "dirtyPrefix", "threads", "report", "optIn", "bytecode", "index", "pathIds"));
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
 
-        if (roundEnv.processingOver() || annotations.size() == 0) {
+        if (roundEnv.processingOver()) {
+            if (report != null) writeReport();
+            if (metadataIndex != null) try {
+                metadataIndex.write();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
             return false;
         }
-        Set<? extends Element> elements = roundEnv.getRootElements();
-        for (Element e : elements)
-            if (asList(CLASS, INTERFACE).contains(e.getKind()))
-                generate((TypeElement) e, elements, properties((TypeElement) e, elements));
-
-        generateBaseClass();
+        if ((filter != null || optIn) && annotations.size() == 0) {
+            return false;
+        }
+        long roundStart = System.nanoTime();
+        int generatedBefore = generated.size();
+        long writtenBefore = sourceWriter.getWritten();
+        if (report != null) round = report.startRound();
+
+        Set<? extends Element> elements = optIn ? optedIn(roundEnv) : roundEnv.getRootElements();
+        roundElements = elements;
+        //the indexed upstream beans are linked, but not generated again
+        if (metadataIndex != null) elements = metadataIndex.withUpstream(elements);
+        PropertyIndex index = index(elements);
+        if (threads > 1 && bytecodeRenderer == null) {
+            //models are taken on this thread, sources are rendered by the pool and written to the filer in order
+            List<BeanModel> models = new ArrayList<BeanModel>();
+            List<TypeElement> origins = new ArrayList<TypeElement>();
+            for (Element e : elements)
+                if (asList(CLASS, INTERFACE).contains(e.getKind())
+                        && !generated.contains(((TypeElement) e).getQualifiedName().toString())) {
+                    TypeElement classElement = (TypeElement) e;
+                    if (round != null) round.scanned++;
+                    if (!isInclude(classElement)) continue;
+                    Map<String, TypeElement> properties = properties(index, classElement);
+                    long start = System.nanoTime();
+                    models.add(model(classElement, elements, properties));
+                    if (round != null) round.modelTime += System.nanoTime() - start;
+                    origins.add(classElement);
+                }
+            renderParallel(models, origins);
+        } else for (Element e : elements)
+            if (asList(CLASS, INTERFACE).contains(e.getKind())
+                    && !generated.contains(((TypeElement) e).getQualifiedName().toString())) {
+                if (round != null) round.scanned++;
+                generate((TypeElement) e, elements, properties(index, (TypeElement) e));
+            }
 
+        //base classes are created once, a second createSourceFile of them fails in the next rounds
+        if (!baseGenerated) {
+            long start = System.nanoTime();
+            if (!isUpstream(getFullObjectClassName())) generateBaseClass();
+            if (accessors) {
+                if (!isUpstream(JAVA_LANG + "." + ACCESSOR)) generateAccessorInterface();
+                if (!isUpstream(JAVA_LANG + "." + GETTER)) generateGetterClass();
+                if (!isUpstream(JAVA_LANG + "." + PROPERTY_READER)) generatePropertyReaderInterface();
+                if (!isUpstream(JAVA_LANG + "." + PROPERTY_RESOLVER)) generatePropertyResolverInterface();
+                if (!isUpstream(JAVA_LANG + "." + REFLECTIVE_RESOLVER)) generateReflectiveResolverClass();
+                if (!isUpstream(JAVA_LANG + "." + CACHING_RESOLVER)) generateCachingResolverClass();
+                if (!isUpstream(JAVA_LANG + "." + PROJECTION)) generateProjectionClass();
+            }
+            if (pathIds && !isUpstream(JAVA_LANG + "." + PATH_REGISTRY)) generatePathRegistryClass();
+            if (dirtyTracking && !isUpstream(JAVA_LANG + "." + TRACKED)) generateTrackedInterface();
+            baseGenerated = true;
+            if (round != null) round.emitTime += System.nanoTime() - start;
+        }
+        this.index = null;
+        roundElements = null;
+
+        //one summary instead of a warning per skipped class
+        if (!filteredOut.isEmpty())
+            warning(filteredOut.size() + " classes are filtered out by " + include + ", e.g. " + filteredOut.iterator().next());
+        if (!excludedOut.isEmpty())
+            warning(excludedOut.size() + " classes are excluded by " + exclude + ", e.g. " + excludedOut.iterator().next());
+        if (round != null) {
+            round.filtered = filteredOut.size();
+            round.excluded = excludedOut.size();
+            round.generated = generated.size() - generatedBefore;
+            round.written += sourceWriter.getWritten() - writtenBefore;
+            round.roundTime = System.nanoTime() - roundStart;
+            round = null;
+        }
+        filteredOut.clear();
+        excludedOut.clear();
 
         return false;
     }
 
+    /**
+     * the base class is on the class path already, it is generated by an upstream module
+     */
+    private boolean isUpstream(String qualifiedName) {
+        return metadataIndex != null && processingEnv.getElementUtils().getTypeElement(qualifiedName) != null;
+    }
+
+    /**
+     * the types marked by {@link BeanMetadata} and the root types of the marked packages,
+     * only they get metadata and nested navigation
+     */
+    private Set<TypeElement> optedIn(RoundEnvironment roundEnv) {
+        Set<TypeElement> result = new LinkedHashSet<TypeElement>();
+        Set<? extends Element> rootElements = null;
+        for (Element e : roundEnv.getElementsAnnotatedWith(BeanMetadata.class)) {
+            if (e instanceof TypeElement) result.add((TypeElement) e);
+            else if (e instanceof PackageElement) {
+                if (rootElements == null) rootElements = roundEnv.getRootElements();
+                for (Element member : e.getEnclosedElements())
+                    if (rootElements.contains(member)) result.add((TypeElement) member);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * the type or its package is marked by {@link BeanMetadata} or the type has metadata of an upstream module
+     */
+    private boolean isOptedIn(TypeElement classElement) {
+        return classElement.getAnnotation(BeanMetadata.class) != null
+                || processingEnv.getElementUtils().getPackageOf(classElement).getAnnotation(BeanMetadata.class) != null
+                || upstream(classElement) != null;
+    }
+
+    private Map<String, TypeElement> properties(PropertyIndex index, TypeElement classElement) {
+        long start = System.nanoTime();
+        Map<String, TypeElement> properties = index.properties(classElement);
+        if (round != null) round.propertiesTime += System.nanoTime() - start;
+        return properties;
+    }
+
+    /**
+     * writes the statistics of all the rounds to the class output
+     */
+    private void writeReport() {
+        Writer writer = null;
+        try {
+            FileObject file = processingEnv.getFiler().createResource(CLASS_OUTPUT, "", REPORT);
+            writer = file.openWriter();
+            report.write(writer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (writer != null) try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     public void generate(TypeElement classElement, Set<? extends Element> elements, Map<String, TypeElement> properties) {
-        Name qName = classElement.getQualifiedName();
         boolean include = isInclude(classElement);
         if (include) {
-            generate(classElement, elements, properties, false);
-            generate(classElement, elements, properties, true);
+            long start = System.nanoTime();
+            BeanModel bean = model(classElement, elements, properties);
+            if (round != null) round.modelTime += System.nanoTime() - start;
+            render(bean, classElement);
         }
     }
 
     public boolean isInclude(TypeElement classElement) {
+        return isInclude(classElement, true);
+    }
+
+    /**
+     * @param count the skipped class and the time are counted in the round, false for the superclasses checked
+     *              while a model is taken, so they are neither reported as skipped nor timed twice
+     */
+    private boolean isInclude(TypeElement classElement, boolean count) {
         boolean result = isObjectClass(classElement);
         if (result) return result;
+        long start = System.nanoTime();
+        String name = classElement.getQualifiedName().toString();
 
-        for (String pkg : include)
-            if (classElement.toString().startsWith(pkg)) {
-                result = true;
-                break;
-            }
-
+        //the opted in types need no include list
+        result = (optIn && includeMatcher.isEmpty()) || includeMatcher.matches(name);
         if (result) {
-            for (String pkg : exclude)
-                if (classElement.toString().startsWith(pkg)) {
-                    result = false;
-                    break;
-                }
-            if (!result) warning("class " + classElement.toString() + " is excluded by " + this.exclude);
-        } else warning("class " + classElement.toString() + " is filtered out by " + this.include);
+            result = !excludeMatcher.matches(name);
+            if (!result && count) excludedOut.add(name);
+        } else if (count) filteredOut.add(name);
+        if (round != null && count) round.includeTime += System.nanoTime() - start;
         return result;
     }
 
     public void generate(TypeElement classElement, Set<? extends Element> elements,
                          Map<String, TypeElement> properties, boolean isStatic) {
+        BeanModel bean = bean(classElement, properties, elements);
         if (!isStatic /*&& isInterface*/) {
-            generate(classElement, elements, properties, isStatic, true);
+            addClass(bean, classElement, elements, properties, isStatic, true);
         }
-        generate(classElement, elements, properties, isStatic, false);
+        addClass(bean, classElement, elements, properties, isStatic, false);
+        render(bean, classElement);
     }
 
     protected static boolean isInterface(TypeElement classElement) {
@@ -154,192 +405,444 @@ public class BeanMetadataGenerator extends AbstractProcessor {
 
     protected void generate(TypeElement classElement, Set<? extends Element> elements,
                             Map<String, TypeElement> properties, boolean isStatic, boolean isInterface) {
+        BeanModel bean = bean(classElement, properties, elements);
+        addClass(bean, classElement, elements, properties, isStatic, isInterface);
+        render(bean, classElement);
+    }
+
+    /**
+     * takes the snapshot of the bean the metadata sources are rendered from
+     */
+    public BeanModel model(TypeElement classElement, Set<? extends Element> elements, Map<String, TypeElement> properties) {
+        BeanModel bean = bean(classElement, properties, elements);
+        addClass(bean, classElement, elements, properties, false, true);
+        addClass(bean, classElement, elements, properties, false, false);
+        addClass(bean, classElement, elements, properties, true, false);
+
+        if (pathConstantsDepth > 1) {
+            Set<String> names = new HashSet<String>(properties.keySet());
+            for (String property : properties.keySet()) {
+                TypeElement elem = properties.get(property);
+                if (elem != null)
+                    pathConstants(bean.pathConstants, property, elem, 2, names, elements);
+            }
+        }
+
+        String accessorName = accessorPrefix + classElement.getSimpleName();
+        if (metadataIndex != null) {
+            String className = classElement.getSimpleName().toString();
+            metadataIndex.add(bean.packageName, new MetadataIndex.Entry(className, getPrefix() + className,
+                    getInterfacePrefix() + className, getStaticPrefix() + className, accessors ? accessorName : null));
+        }
+        if (accessors && generated.add(bean.packageName + "." + accessorName)) {
+            bean.accessorName = accessorName;
+            bean.rootName = metadataName(classElement, false, false);
+            bean.beanProperties.addAll(beanProperties(classElement, elements));
+            Set<String> constants = new HashSet<String>(asList("INSTANCE"));
+            for (BeanProperty property : bean.beanProperties) {
+                String constant = constantName(property.name);
+                if (constants.add(constant)) bean.ordinalConstants.add(constant);
+                else {
+                    bean.ordinalConstants.add(null);
+                    warning("ordinal constant " + constant + " of " + classElement.getSimpleName() + "."
+                            + property.name + " is skipped as duplicated");
+                }
+            }
+        }
+        String dirtyName = dirtyPrefix + classElement.getSimpleName();
+        if (dirtyTracking && isTrackable(classElement) && generated.add(bean.packageName + "." + dirtyName)) {
+            if (bean.beanProperties.isEmpty()) bean.beanProperties.addAll(beanProperties(classElement, elements));
+            bean.dirtyName = dirtyName;
+            trackedMembers(classElement, bean);
+        }
+        return bean;
+    }
+
+    /**
+     * a top level, concrete, not final and not generic class with a not private constructor can be subclassed
+     * by the dirty tracking class
+     */
+    private boolean isTrackable(TypeElement classElement) {
+        Set<Modifier> modifiers = classElement.getModifiers();
+        if (classElement.getKind() != CLASS || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.ABSTRACT)
+                || !classElement.getTypeParameters().isEmpty()
+                || !(classElement.getEnclosingElement() instanceof PackageElement)) return false;
+        for (Element member : classElement.getEnclosedElements())
+            if (member.getKind() == CONSTRUCTOR && !member.getModifiers().contains(Modifier.PRIVATE)) return true;
+        return false;
+    }
+
+    /**
+     * the constructors of the class and the public not final setters of its properties for the dirty tracking class,
+     * the properties written by fields are not tracked
+     */
+    private void trackedMembers(TypeElement classElement, BeanModel bean) {
+        Types types = processingEnv.getTypeUtils();
+        DeclaredType beanType = (DeclaredType) classElement.asType();
+        for (Element member : classElement.getEnclosedElements()) {
+            if (member.getKind() != CONSTRUCTOR || member.getModifiers().contains(Modifier.PRIVATE)) continue;
+            ExecutableElement constructor = (ExecutableElement) member;
+            StringBuilder parameters = new StringBuilder();
+            StringBuilder arguments = new StringBuilder();
+            List<? extends TypeMirror> parameterTypes = ((ExecutableType) constructor.asType()).getParameterTypes();
+            for (int i = 0; i < parameterTypes.size(); i++) {
+                if (i > 0) {
+                    parameters.append(", ");
+                    arguments.append(", ");
+                }
+                String type = typeName(parameterTypes.get(i));
+                if (constructor.isVarArgs() && i == parameterTypes.size() - 1)
+                    type = type.substring(0, type.length() - 2) + "...";
+                parameters.append(type).append(" a").append(i);
+                arguments.append("a").append(i);
+            }
+            Set<Modifier> modifiers = constructor.getModifiers();
+            String access = modifiers.contains(PUBLIC) ? "public " : modifiers.contains(Modifier.PROTECTED) ? "protected " : "";
+            bean.constructors.add(new BeanModel.Constructor(access, parameters.toString(), arguments.toString(),
+                    thrownTypes(constructor.getThrownTypes())));
+        }
+
+        Map<String, ExecutableElement> getters = new HashMap<String, ExecutableElement>();
+        Map<String, List<ExecutableElement>> setters = new HashMap<String, List<ExecutableElement>>();
+        for (Element member : processingEnv.getElementUtils().getAllMembers(classElement)) {
+            Set<Modifier> modifiers = member.getModifiers();
+            if (member.getKind() == METHOD && modifiers.contains(PUBLIC) && !modifiers.contains(STATIC))
+                accessor((ExecutableElement) member, getters, setters);
+        }
+        for (int ordinal = 0; ordinal < bean.beanProperties.size(); ordinal++) {
+            BeanProperty property = bean.beanProperties.get(ordinal);
+            if (!property.isWritable() || property.field) continue;
+            ExecutableElement getter = getters.get(property.read.substring(0, property.read.length() - 2));
+            TypeMirror type = ((ExecutableType) types.asMemberOf(beanType, getter)).getReturnType();
+            ExecutableElement setter = setter(beanType, setters.get(property.write), type);
+            if (setter == null || setter.getModifiers().contains(Modifier.FINAL)) continue;
+            ExecutableType setterType = (ExecutableType) types.asMemberOf(beanType, setter);
+            bean.trackedSetters.add(new BeanModel.Setter(ordinal, property.name, property.write,
+                    typeName(setterType.getParameterTypes().get(0)), typeName(setterType.getReturnType()),
+                    thrownTypes(setterType.getThrownTypes())));
+        }
+    }
+
+    /**
+     * source of the throws list of an overriding member
+     */
+    private String thrownTypes(List<? extends TypeMirror> thrownTypes) {
+        StringBuilder exceptions = new StringBuilder();
+        for (TypeMirror thrown : thrownTypes) {
+            if (exceptions.length() > 0) exceptions.append(", ");
+            exceptions.append(typeName(thrown));
+        }
+        return exceptions.toString();
+    }
+
+    private BeanModel bean(TypeElement classElement, Map<String, TypeElement> properties, Set<? extends Element> elements) {
+        String className = classElement.getSimpleName().toString();
+        BeanModel bean = new BeanModel(packageName(classElement), className, getStaticPrefix() + className);
+        Map<String, TypeMirror> types = properties.containsValue(null) ? propertyTypes(classElement, properties) : null;
+        for (String property : properties.keySet()) {
+            TypeElement elem = properties.get(property);
+            if (elem != null) {
+                bean.properties.add(new BeanModel.Property(property, metadataName(elem, false, false),
+                        metadataName(elem, false, isInterface(elem))));
+                continue;
+            }
+            TypeMirror type = types.get(property);
+            String indexType = null;
+            if (type instanceof ArrayType) {
+                indexType = "int";
+                type = ((ArrayType) type).getComponentType();
+            } else if (type instanceof DeclaredType) {
+                List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+                if (args.size() == 1 && isSubtype(type, List.class)) {
+                    indexType = "int";
+                    type = args.get(0);
+                } else if (args.size() == 2 && isSubtype(type, Map.class) && args.get(0).toString().equals(String.class.getName())) {
+                    indexType = "String";
+                    type = args.get(1);
+                }
+            }
+            if (type instanceof WildcardType) type = ((WildcardType) type).getExtendsBound();
+            Element element = indexType != null && type instanceof DeclaredType ? ((DeclaredType) type).asElement() : null;
+            if (element != null && elements.contains(element)) {
+                elem = (TypeElement) element;
+                bean.properties.add(new BeanModel.Property(property, metadataName(elem, false, false),
+                        metadataName(elem, false, isInterface(elem)), packageName(elem), indexType));
+            } else bean.properties.add(new BeanModel.Property(property, null, null));
+        }
+        return bean;
+    }
+
+    /**
+     * types of the properties having no nested metadata, they are checked for indexed and mapped navigation
+     */
+    private Map<String, TypeMirror> propertyTypes(TypeElement classElement, Map<String, TypeElement> properties) {
+        Map<String, TypeMirror> result = new HashMap<String, TypeMirror>();
+        Map<String, TypeMirror> fields = new HashMap<String, TypeMirror>();
+        for (Element member : processingEnv.getElementUtils().getAllMembers(classElement)) {
+            Set<Modifier> modifiers = member.getModifiers();
+            if (!modifiers.contains(PUBLIC) || modifiers.contains(STATIC)) continue;
+            String mName = member.getSimpleName().toString();
+            if (member.getKind() == FIELD) {
+                if (properties.containsKey(mName)) fields.put(mName, member.asType());
+            } else if (member.getKind() == METHOD && mName.startsWith("get") && mName.length() > 3
+                    && ((ExecutableElement) member).getParameters().isEmpty()) {
+                String property = decapitalize(mName.substring(3));
+                if (properties.containsKey(property) && !result.containsKey(property))
+                    result.put(property, ((ExecutableElement) member).getReturnType());
+            }
+        }
+        for (String field : fields.keySet())
+            if (!result.containsKey(field)) result.put(field, fields.get(field));
+        return result;
+    }
+
+    private boolean isSubtype(TypeMirror type, Class<?> of) {
+        Types types = processingEnv.getTypeUtils();
+        TypeElement ofElement = processingEnv.getElementUtils().getTypeElement(of.getName());
+        return ofElement != null && types.isAssignable(types.erasure(type), types.erasure(ofElement.asType()));
+    }
+
+    /**
+     * works out the declaration and the imports of a metadata class
+     */
+    private void addClass(BeanModel bean, TypeElement classElement, Set<? extends Element> elements,
+                          Map<String, TypeElement> properties, boolean isStatic, boolean isInterface) {
         Name className = classElement.getSimpleName();
         PackageElement packageElement = (PackageElement) classElement.getEnclosingElement();
         Name pkgName = packageElement.getQualifiedName();
-        Filer processingEnvFiler = processingEnv.getFiler();
 
         String prefix = isStatic ? getStaticPrefix() : isInterface ? getInterfacePrefix() : getPrefix();
         String metadataClassName = prefix + className;
-        BufferedWriter body = null;
-        try {
-            String msg = "Generating " + pkgName + "." + metadataClassName;
-//            warning(msg);
-
-            StringWriter out = new StringWriter();
-            body = new BufferedWriter(out);
-
-            Set<String> imports = new LinkedHashSet<String>();
+        String qualifiedName = pkgName + "." + metadataClassName;
+        if (!generated.add(qualifiedName)) return;
 
-            imports.add(getFullObjectClassName());
+        Set<String> imports = new LinkedHashSet<String>();
 
-            TypeMirror _tmp = classElement.getSuperclass();
-            DeclaredType superClass = _tmp instanceof DeclaredType ? (DeclaredType) _tmp : null;
-            if (superClass == null && !(_tmp instanceof NoType))
-                throw new IllegalStateException("incompatible base type " + superClass + " for " + classElement);
+        imports.add(getFullObjectClassName());
 
-            body.newLine();
+        TypeMirror _tmp = classElement.getSuperclass();
+        DeclaredType superClass = _tmp instanceof DeclaredType ? (DeclaredType) _tmp : null;
+        if (superClass == null && !(_tmp instanceof NoType))
+            throw new IllegalStateException("incompatible base type " + superClass + " for " + classElement);
 
-            body.append("public ").append(isInterface ? "interface" : "class").append(" ").append(metadataClassName);
+        String extendsName = null;
+        boolean implementsListStarted = false;
+        if (superClass != null) {
 
-            boolean implementsListStarted = false;
-            if (superClass != null) {
+            TypeElement superElem = (TypeElement) superClass.asElement();
 
-                TypeElement superElem = (TypeElement) superClass.asElement();
+            //the superclasses not opted in get no metadata, the walk stops there
+            boolean superInclude = (!optIn || isObjectClass(superElem) || isOptedIn(superElem))
+                    && isInclude(superElem, false);
+            boolean superClassFound = !checkSuperclass || elements.contains(superElem);
+            boolean extend = superInclude && superClassFound && !(isInterface && isObjectClass(superElem));
+            if (extend) {
+                if (isObjectClass(superElem)) imports.add(JAVA_LANG + "." + (extendsName = getObjectClassName()));
+                else
+                    imports.add(packageName(superElem) + "." + (extendsName = metadataName(superElem, isStatic, isInterface)));
 
-                boolean superInclude = isInclude(superElem);
-                boolean superClassFound = !checkSuperclass || elements.contains(superElem);
-                boolean extend = superInclude && superClassFound && !(isInterface && isObjectClass(superElem));
-                if (extend) {
-                    body.append(" extends ");
-                    String name;
-                    if (isObjectClass(superElem)) imports.add(JAVA_LANG + "." + (name = getObjectClassName()));
-                    else
-                        imports.add(packageName(superElem) + "." + (name = metadataName(superElem, isStatic, isInterface)));
-
-                    body.append(name);
-
-                    implementsListStarted = isInterface;
-                } else if (!isInterface) {
-                    body.append(" extends ");
-                    body.append(getObjectClassName());
-                    imports.add(JAVA_LANG + "." + getObjectClassName());
-                }
+                implementsListStarted = isInterface;
             } else if (!isInterface) {
-                body.append(" extends ");
-                body.append(getObjectClassName());
+                extendsName = getObjectClassName();
                 imports.add(JAVA_LANG + "." + getObjectClassName());
             }
+        } else if (!isInterface) {
+            extendsName = getObjectClassName();
+            imports.add(JAVA_LANG + "." + getObjectClassName());
+        }
 
-            if (!isStatic) {
-                if (!isInterface) {
-                    String name = getInterfacePrefix() + className;
-                    body.append("\n").append(intend).append(intend)
-                            .append("implements ").append(name);
-                    implementsListStarted = true;
-                }
-
-                List<? extends TypeMirror> interfaces = classElement.getInterfaces();
-                List<Element> iElements = new ArrayList<Element>(interfaces.size());
-                for (TypeMirror i : interfaces) {
-                    Element e = get(i, elements);
-                    if (e != null) iElements.add(e);
-                }
-                if (!iElements.isEmpty()) {
-                    if (!implementsListStarted)
-                        body.append("\n").append(intend).append(intend).append(isInterface ? "extends " : "implements ");
-                    boolean first = !implementsListStarted;
-                    for (Element i : iElements) {
-                        Name iName = i.getSimpleName();
-                        PackageElement iPgk = (PackageElement) i.getEnclosingElement();
-                        Name iPgkName = iPgk.getQualifiedName();
-                        if (!first) body.append(",\n").append(intend).append(intend);
-
-                        String name = getInterfacePrefix() + iName.toString();
-                        imports.add(iPgkName.toString() + "." + name);
-                        body.append(name);
-                        first = false;
-                    }
+        List<String> implementsList = new ArrayList<String>();
+        if (!isStatic) {
+            if (!isInterface) implementsList.add(getInterfacePrefix() + className);
+
+            for (TypeMirror i : classElement.getInterfaces()) {
+                Element e = get(i, elements);
+                if (e != null) {
+                    PackageElement iPgk = (PackageElement) e.getEnclosingElement();
+                    String name = getInterfacePrefix() + e.getSimpleName();
+                    imports.add(iPgk.getQualifiedName() + "." + name);
+                    implementsList.add(name);
                 }
             }
-            body.append(" {");
-            body.newLine();
-
-//            String staticVarName = null;
-//            if (isStatic) {
-//                //для статика генерим переменнную основного типа
-//                String baseName = className.toString();
-//                String varClass = getPrefix() + baseName;
-//                staticVarName = "_" + staticVarName(baseName);
-//                body.append(intend).append("public static final ").append(varClass).append(" ").append(staticVarName).append(" = ")
-//                        .append(newObjectCode(varClass));
-//                body.newLine();
-//            }
+        }
 
+        if (accessors && !isStatic && !isInterface) imports.add(JAVA_LANG + "." + ACCESSOR);
 
-            if (!(isStatic || isInterface)) {
-                body.append(intend).append("public ").append(metadataClassName)
-                        .append("(String prefix, " + getObjectClassName() + " parent) { super(prefix, parent); }");
-                body.newLine();
-                body.append(intend).append("protected ").append(metadataClassName).append("() { super(); }");
-                body.newLine();
+        for (TypeElement elem : properties.values())
+            if (elem != null) {
+                String packageName = packageName(elem);
+                imports.add(packageName + "." + metadataName(elem, false, false));
+                imports.add(packageName + "." + metadataName(elem, false, isInterface(elem)));
             }
-
-            body.newLine();
-            for (String property : properties.keySet()) {
-                TypeElement elem = properties.get(property);
-
-
-                if (elem != null) {
-                    String newObjType = metadataName(elem, false, false);
-                    String returnObjType = metadataName(elem, false, isInterface(elem));
-                    String packageName = packageName(elem);
-                    imports.add(packageName + "." + newObjType);
-                    imports.add(packageName + "." + returnObjType);
-                    String _method = returnObjType + " " + property + "()";
-                    body.append(intend);
-                    if (!isInterface) {
-                        _method += " { return " + newObjectCode(newObjType, property, isStatic, className) + " }";
-                        body.append("public ");
-                        if (isStatic) body.append("static ");
-                    }
-                    body.append(_method);
-                    if (isInterface) body.append(";");
-                    body.newLine();
-                }
-                if (!isInterface) {
-                    String statField = statField(className, property);
-                    String wrapped = WRAP_METHOD + "(" + statField + ")";
-                    String stat = "\"" + property + "\"";
-                    String porpBody = isStatic ? stat : wrapped;
-                    String _prop = "String " + property + " = " + porpBody + ";";
-                    body.append(intend).append("public final ");
-                    if (isStatic) body.append("static ");
-                    body.append(_prop);
-                    body.newLine();
-                }
+        for (BeanModel.Property property : bean.properties)
+            if (property.isIndexed()) {
+                imports.add(property.nodePackage + "." + property.nodeType);
+                imports.add(property.nodePackage + "." + property.returnType);
             }
 
-//            if (!isStatic) bw.append(intend).append("public static final ")
-//                    .append(metadataClassName).append(" ").append(onlyUps(className.toString()).toLowerCase())
-//                    .append(" = new ").append(metadataClassName).append("();");
-
-            body.newLine();
-            body.append("}");
+        bean.classes.add(new BeanModel.MetadataClass(metadataClassName, qualifiedName, isStatic, isInterface,
+                extendsName, implementsListStarted, implementsList, new ArrayList<String>(imports)));
+    }
 
-            JavaFileObject jfo = processingEnvFiler.createSourceFile(pkgName + "." + metadataClassName);
-            BufferedWriter result = new BufferedWriter(jfo.openWriter());
+    /**
+     * streams the metadata sources of the bean to the filer
+     */
+    private void render(BeanModel bean, final TypeElement origin) {
+        long start = System.nanoTime();
+        if (bytecodeRenderer != null) {
+            renderClassFiles(bean, origin);
+            if (round != null) round.emitTime += System.nanoTime() - start;
+            return;
+        }
+        try {
+            renderer.render(bean, new MetadataRenderer.Output() {
+                public Writer open(String qualifiedName) throws IOException {
+                    return processingEnv.getFiler().createSourceFile(qualifiedName, origin).openWriter();
+                }
+            }, sourceWriter);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(sourceWriter);
+            if (round != null) round.emitTime += System.nanoTime() - start;
+        }
+    }
 
-            result.append("package ").append(pkgName).append(";");
-            result.newLine();
+    private void renderClassFiles(BeanModel bean, final TypeElement origin) {
+        try {
+            bytecodeRenderer.render(bean, new BytecodeRenderer.Output() {
+                public OutputStream open(String qualifiedName) throws IOException {
+                    OutputStream out = processingEnv.getFiler().createClassFile(qualifiedName, origin).openOutputStream();
+                    if (round == null) return out;
+                    return new FilterOutputStream(out) {
+                        @Override
+                        public void write(byte[] b, int off, int len) throws IOException {
+                            out.write(b, off, len);
+                            round.writtenBytes += len;
+                        }
+                    };
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            if (!imports.isEmpty()) result.newLine();
-            for (String imp : imports) {
-                result.append("import ").append(imp).append(";");
-                result.newLine();
+    /**
+     * renders the sources by a pool of the threads option size,
+     * the filer is used by this thread only and gets the sources in the order of the models
+     */
+    private void renderParallel(List<BeanModel> models, List<TypeElement> origins) {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "bean-metadata-" + (++count));
+                thread.setDaemon(true);
+                return thread;
             }
-            if (!imports.isEmpty()) result.newLine();
+        });
+        final ThreadLocal<SourceWriter> writers = new ThreadLocal<SourceWriter>() {
+            @Override
+            protected SourceWriter initialValue() {
+                return new SourceWriter(intend);
+            }
+        };
+        try {
+            List<Future<RenderedSources>> futures = new ArrayList<Future<RenderedSources>>(models.size());
+            for (final BeanModel bean : models)
+                futures.add(pool.submit(new Callable<RenderedSources>() {
+                    public RenderedSources call() throws IOException {
+                        RenderedSources sources = new RenderedSources();
+                        SourceWriter out = writers.get();
+                        try {
+                            renderer.render(bean, sources, out);
+                        } finally {
+                            close(out);
+                        }
+                        return sources;
+                    }
+                }));
+            Filer filer = processingEnv.getFiler();
+            for (int i = 0; i < futures.size(); i++) {
+                RenderedSources sources = futures.get(i).get();
+                for (int s = 0; s < sources.names.size(); s++) {
+                    Writer writer = filer.createSourceFile(sources.names.get(s), origins.get(i)).openWriter();
+                    try {
+                        sources.texts.get(s).writeTo(writer);
+                        if (round != null) round.written += sources.texts.get(s).size();
+                    } finally {
+                        writer.close();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            if (round != null) round.emitTime += System.nanoTime() - start;
+        }
+    }
 
-            body.flush();
-            result.append(out.getBuffer().toString());
-            body.close();
+    /**
+     * sources rendered by a worker thread, waiting for the filer
+     */
+    private static class RenderedSources implements MetadataRenderer.Output {
+        final List<String> names = new ArrayList<String>();
+        final List<CharArrayWriter> texts = new ArrayList<CharArrayWriter>();
+
+        public Writer open(String qualifiedName) {
+            CharArrayWriter text = new CharArrayWriter(4096);
+            names.add(qualifiedName);
+            texts.add(text);
+            return text;
+        }
+    }
 
-            result.flush();
-            generated.put(pkgName.toString() + "." + className.toString(), classElement);
+    /**
+     * collects compile-time constants of the nested paths under the given one, e.g. ADDRESS_CITY = "address.city".
+     * The depth bounds the self-referencing beans too, e.g. MANAGER_NAME is collected for the depth 2.
+     */
+    private void pathConstants(Map<String, String> constants, String path, TypeElement type, int depth,
+                               Set<String> names, Set<? extends Element> elements) {
+        if (depth > pathConstantsDepth) return;
+        Map<String, TypeElement> nested = index(elements).allProperties(type);
+        for (String property : nested.keySet()) {
+            String nestedPath = path + "." + property;
+            String name = constantName(nestedPath);
+            if (names.add(name)) constants.put(name, nestedPath);
+            else warning("path constant " + name + " of " + nestedPath + " is skipped as duplicated");
+            TypeElement elem = nested.get(property);
+            if (elem != null) pathConstants(constants, nestedPath, elem, depth + 1, names, elements);
+        }
+    }
 
-        } catch (IOException e1) {
-            throw new RuntimeException(e1);
-        } finally {
-            if (body != null) try {
-                body.close();
-            } catch (IOException e1) {
-                e1.printStackTrace();
+    public static String constantName(String path) {
+        StringBuilder result = new StringBuilder(path.length() + 8);
+        char prev = 0;
+        for (char c : path.toCharArray()) {
+            if (c == '.') result.append('_');
+            else {
+                if (isUpperCase(c) && (Character.isLowerCase(prev) || Character.isDigit(prev))) result.append('_');
+                result.append(Character.toUpperCase(c));
             }
+            prev = c;
         }
+        return result.toString();
     }
 
-    private String statField(Name className, String property) {
-        return getStaticPrefix() + className + "." + property;
+    /**
+     * property index of the current round
+     */
+    protected PropertyIndex index(Set<? extends Element> elements) {
+        if (index == null || index.getElements() != elements) index = new PropertyIndex(elements);
+        return index;
     }
 
     private String staticVarName(String baseName) {
@@ -348,13 +851,6 @@ public class BeanMetadataGenerator extends AbstractProcessor {
         return result.toString();
     }
 
-    private String newObjectCode(String className, String property, boolean isStatic, Name delegateClass) {
-        String nameArg = isStatic ? /*ссылка на свою же переменную*/ property : statField(delegateClass, property);
-        String constructor = "(" + nameArg + ", "
-                + (isStatic ? "null" : "this") + ");";
-        return "new " + className + constructor;
-    }
-
     private String newObjectCode(String className) {
         return "new " + className + "();";
     }
@@ -363,6 +859,14 @@ public class BeanMetadataGenerator extends AbstractProcessor {
         return PREFIX + Object.class.getSimpleName();
     }
 
+    private static void close(SourceWriter out) {
+        if (out.isOpen()) try {
+            out.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void warning(String msg) {
         Messager messager = processingEnv.getMessager();
         messager.printMessage(WARNING, msg);
@@ -413,76 +917,1378 @@ public class BeanMetadataGenerator extends AbstractProcessor {
         String metadataClassName = getObjectClassName();
         String qualifiedBaseClass = JAVA_LANG + "." + metadataClassName;
         Filer processingEnvFiler = processingEnv.getFiler();
-        BufferedWriter bw = null;
+        SourceWriter out = sourceWriter;
 
         warning("Generating " + qualifiedBaseClass);
 
         try {
+            generated.add(qualifiedBaseClass);
             JavaFileObject jfo = processingEnvFiler.createSourceFile(qualifiedBaseClass);
 
-            bw = new BufferedWriter(jfo.openWriter());
-            bw.append("package ").append(JAVA_LANG).append(";");
-            bw.newLine();
-
-            bw.append("public class " + metadataClassName + " implements CharSequence {");
-
-            bw.newLine();
-            bw.append(intend).append("protected final String " + _PREFIX + ";");
-            bw.append(intend).append("protected final " + metadataClassName + " " + PARENT + ";");
-            bw.newLine();
-            bw.append(intend).append("public ").append(metadataClassName).append("(String prefix, "
-                    + metadataClassName + " parent) { \n" +
-                    intend + "this." + _PREFIX + " = prefix;\n" +
-                    intend + "this." + PARENT + " = parent;\n" +
-                    " }");
-            bw.newLine();
-            bw.append(intend).append("public ").append(metadataClassName).append("() { \n" +
-                    intend + "this." + _PREFIX + " = \"\";\n" +
-                    intend + "this." + PARENT + " = null;\n" +
-                    " }");
-            bw.newLine();
-
-            bw.append(intend).append("public int length() { return " + _PREFIX + ".length(); }");
-            bw.newLine();
-            bw.append(intend).append("public char charAt(int index) { return " + _PREFIX + ".charAt(index); }");
-            bw.newLine();
-            bw.append(intend).append("public CharSequence subSequence(int start, int end) { return " + _PREFIX + ".subSequence(start, end); }");
-            bw.newLine();
-
-            bw.append(intend).append("public String toString() { return " + _PREFIX + "; }");
-            bw.newLine();
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+
+            out.append("public class ").append(metadataClassName).append(" implements CharSequence {");
+
+            out.newLine();
+            out.indent().append("protected final String " + _PREFIX + ";");
+            out.indent().append("protected final ").append(metadataClassName).append(" " + PARENT + ";");
+            out.newLine();
+            out.indent().append("private String _" + FULL_PATH + ";");
+            out.newLine();
+            //the caches are racy, 0 means not computed yet, so the length is kept incremented by one
+            out.indent().append("private int _length;");
+            out.newLine();
+            out.indent().append("private int _hash;");
+            out.newLine();
+            if (pathIds) {
+                out.indent().append("private int _" + PATH_ID + ";");
+                out.newLine();
+            }
+            out.indent().append("public ").append(metadataClassName).append("(String prefix, ")
+                    .append(metadataClassName).append(" parent) { \n")
+                    .indent().append("this." + _PREFIX + " = prefix;\n")
+                    .indent().append("this." + PARENT + " = parent;\n")
+                    .append(" }");
+            out.newLine();
+            out.indent().append("public ").append(metadataClassName).append("() { \n")
+                    .indent().append("this." + _PREFIX + " = \"\";\n")
+                    .indent().append("this." + PARENT + " = null;\n")
+                    .append(" }");
+            out.newLine();
+
+            //the node is a char sequence of its full path, equal nodes have the same path
+            out.indent().append("public int length() {\n" +
+                    "        int length = _length;\n" +
+                    "        if (length == 0) {\n" +
+                    "            int prefixLength = _PREFIX == null ? 0 : _PREFIX.length();\n" +
+                    "            int parentLength = parent != null ? parent.length() : 0;\n" +
+                    "            length = 1 + (parentLength == 0 ? prefixLength\n" +
+                    "                    : prefixLength == 0 ? parentLength : parentLength + 1 + prefixLength);\n" +
+                    "            _length = length;\n" +
+                    "        }\n" +
+                    "        return length - 1;\n" +
+                    "    }");
+            out.newLine();
+            out.indent().append("public char charAt(int index) { return " + FULL_PATH + "().charAt(index); }");
+            out.newLine();
+            out.indent().append("public CharSequence subSequence(int start, int end) { return " + FULL_PATH + "().subSequence(start, end); }");
+            out.newLine();
+
+            out.indent().append("public String toString() { return " + FULL_PATH + "(); }");
+            out.newLine();
+
+            //the hash equals to the String one of the full path, it is folded from the parent hash without building the path
+            out.append("    public int hashCode() {\n" +
+                    "        int h = _hash;\n" +
+                    "        if (h == 0) {\n" +
+                    "            String path = _" + FULL_PATH + ";\n" +
+                    "            if (path != null) h = path.hashCode();\n" +
+                    "            else {\n" +
+                    "                boolean noParent = parent == null || parent.length() == 0;\n" +
+                    "                h = noParent ? 0 : parent.hashCode();\n" +
+                    "                if (_PREFIX != null && _PREFIX.length() > 0) {\n" +
+                    "                    if (!noParent) h = 31 * h + '.';\n" +
+                    "                    for (int i = 0; i < _PREFIX.length(); i++) h = 31 * h + _PREFIX.charAt(i);\n" +
+                    "                }\n" +
+                    "            }\n" +
+                    "            _hash = h;\n" +
+                    "        }\n" +
+                    "        return h;\n" +
+                    "    }");
+            out.newLine();
+            out.append("    public boolean equals(Object o) {\n" +
+                    "        if (this == o) return true;\n" +
+                    "        if (!(o instanceof " + PREFIX + "Object)) return false;\n" +
+                    "        " + PREFIX + "Object other = (" + PREFIX + "Object) o;\n" +
+                    "        if (hashCode() != other.hashCode() || length() != other.length()) return false;\n" +
+                    "        " + PREFIX + "Object a = this;\n" +
+                    "        " + PREFIX + "Object b = other;\n" +
+                    "        while (true) {\n" +
+                    "            while (a != null && (a._PREFIX == null || a._PREFIX.length() == 0)) a = a.parent;\n" +
+                    "            while (b != null && (b._PREFIX == null || b._PREFIX.length() == 0)) b = b.parent;\n" +
+                    "            if (a == null || b == null) return a == b;\n" +
+                    "            if (a == b) return true;\n" +
+                    "            if (!a._PREFIX.equals(b._PREFIX)) return " + FULL_PATH + "().equals(other." + FULL_PATH + "());\n" +
+                    "            a = a.parent;\n" +
+                    "            b = b.parent;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
 
 //            bw.append(intend).append("public final String " + WRAP_METHOD
 //                    + "(String p) { return " + _PREFIX + " != null ? " + _PREFIX + " +\".\" + p: p; }");
 
 
-            bw.newLine();
-            bw.append("    public final String w(String propName) {\n" +
-                    "        PObject parent = this.parent;\n" +
-                    "        StringBuilder prnt = new StringBuilder();\n" +
-                    "        while (parent != null && " + "!(parent._PREFIX == null || parent._PREFIX.isEmpty())" + ") {\n" +
-                    "            prnt.append(parent._PREFIX).append(\".\");\n" +
-                    "            parent = parent.parent;\n" +
+            out.newLine();
+            //the path is immutable, so a racy cache is safe and no locking is needed
+            out.append("    public final String " + FULL_PATH + "() {\n" +
+                    "        String path = _" + FULL_PATH + ";\n" +
+                    "        if (path == null) {\n" +
+                    "            String parentPath = parent != null ? parent." + FULL_PATH + "() : \"\";\n" +
+                    "            if (_PREFIX == null || _PREFIX.length() == 0) path = parentPath;\n" +
+                    "            else if (parentPath.length() == 0) path = _PREFIX;\n" +
+                    "            else path = parentPath + \".\" + _PREFIX;\n" +
+                    "            _" + FULL_PATH + " = path;\n" +
                     "        }\n" +
-                    "        return prnt.toString() + (" + "!(_PREFIX == null || _PREFIX.isEmpty())" + " ? _PREFIX + \".\" + propName : propName);\n" +
+                    "        return path;\n" +
                     "    }");
-            bw.newLine();
-            bw.append("}");
+            out.newLine();
+            out.append("    public final String " + WRAP_METHOD + "(String propName) {\n" +
+                    "        String path = " + FULL_PATH + "();\n" +
+                    "        return path.length() == 0 ? propName : path + \".\" + propName;\n" +
+                    "    }");
+            out.newLine();
+            //the path segments of the indexed and mapped navigation methods
+            out.append("    protected static String " + INDEXED_METHOD + "(String[] segments, String property, int index) {\n" +
+                    "        if (index < 0 || index >= segments.length) return property + '[' + index + ']';\n" +
+                    "        String segment = segments[index];\n" +
+                    "        if (segment == null) segments[index] = segment = property + '[' + index + ']';\n" +
+                    "        return segment;\n" +
+                    "    }");
+            out.newLine();
+            out.append("    protected static String " + MAPPED_METHOD + "(String property, String key) {\n" +
+                    "        return property + '(' + key + ')';\n" +
+                    "    }");
+            out.newLine();
+            if (parsers) {
+                //the generated parsers compare the path characters in place, no segment string is cut out
+                out.append("    protected static boolean " + MATCHES_METHOD + "(CharSequence path, int from, String chars) {\n" +
+                        "        if (path.length() - from < chars.length()) return false;\n" +
+                        "        for (int i = 0; i < chars.length(); i++) if (path.charAt(from + i) != chars.charAt(i)) return false;\n" +
+                        "        return true;\n" +
+                        "    }");
+                out.newLine();
+                out.append("    protected static int " + CLOSING_METHOD + "(CharSequence path, int from, char open, char close) {\n" +
+                        "        if (from >= path.length() || path.charAt(from) != open) return -1;\n" +
+                        "        for (int i = from + 1; i < path.length(); i++) if (path.charAt(i) == close) return i;\n" +
+                        "        return -1;\n" +
+                        "    }");
+                out.newLine();
+                out.append("    protected static int " + INDEX_METHOD + "(CharSequence path, int from, int to) {\n" +
+                        "        if (from == to || to - from > 9) return -1;\n" +
+                        "        int index = 0;\n" +
+                        "        for (int i = from; i < to; i++) {\n" +
+                        "            char c = path.charAt(i);\n" +
+                        "            if (c < '0' || c > '9') return -1;\n" +
+                        "            index = index * 10 + c - '0';\n" +
+                        "        }\n" +
+                        "        return index;\n" +
+                        "    }");
+                out.newLine();
+            }
+            if (pathIds) {
+                //the id is cached incremented by one as the length is, the registry is asked once per node
+                out.append("    public final int " + PATH_ID + "() {\n" +
+                        "        int id = _" + PATH_ID + ";\n" +
+                        "        if (id == 0) {\n" +
+                        "            int parentId = parent != null ? parent." + PATH_ID + "() : " + PATH_REGISTRY + ".ROOT;\n" +
+                        "            id = 1 + (_PREFIX == null || _PREFIX.length() == 0 ? parentId : " + PATH_REGISTRY + ".id(parentId, _PREFIX));\n" +
+                        "            _" + PATH_ID + " = id;\n" +
+                        "        }\n" +
+                        "        return id - 1;\n" +
+                        "    }");
+                out.newLine();
+            }
+            if (accessors) {
+                //overridden by the bean nodes, the getter chains find the accessors of the parent nodes by it
+                out.indent().append("public " + ACCESSOR + "<?> " + ACCESSOR_METHOD + "() { return null; }");
+                out.newLine();
+            }
+            out.append("}");
+            out.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
-            if (bw != null) try {
-                bw.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            close(out);
+        }
+    }
+
+    /**
+     * all readable properties of the type in the allProperties order with the members reading and writing them
+     */
+    public List<BeanProperty> beanProperties(TypeElement e, Set<? extends Element> elements) {
+        Types types = processingEnv.getTypeUtils();
+        DeclaredType beanType = (DeclaredType) e.asType();
+        Map<String, ExecutableElement> getters = new HashMap<String, ExecutableElement>();
+        Map<String, List<ExecutableElement>> setters = new HashMap<String, List<ExecutableElement>>();
+        Map<String, VariableElement> fields = new HashMap<String, VariableElement>();
+        for (Element member : processingEnv.getElementUtils().getAllMembers(e)) {
+            Set<Modifier> modifiers = member.getModifiers();
+            if (!modifiers.contains(PUBLIC) || modifiers.contains(STATIC)) continue;
+            if (member.getKind() == FIELD) fields.put(member.getSimpleName().toString(), (VariableElement) member);
+            else if (member.getKind() == METHOD) accessor((ExecutableElement) member, getters, setters);
+        }
+
+        Map<String, TypeElement> all = index(elements).allProperties(e);
+        List<BeanProperty> result = new ArrayList<BeanProperty>(all.size());
+        for (String property : all.keySet()) {
+            String cap = capitalize(property);
+            ExecutableElement getter = getters.get("get" + cap);
+            ExecutableElement isGetter = getters.get("is" + cap);
+            if (getter == null || (isGetter != null && isGetter.getReturnType().getKind() == BOOLEAN))
+                getter = isGetter != null ? isGetter : getter;
+            VariableElement field = fields.get(property);
+
+            TypeMirror type;
+            String read;
+            String write = null;
+            boolean readChecked = false;
+            boolean writeChecked = false;
+            boolean isField = getter == null;
+            if (!isField) {
+                ExecutableType getterType = (ExecutableType) types.asMemberOf(beanType, getter);
+                type = getterType.getReturnType();
+                read = getter.getSimpleName() + "()";
+                readChecked = throwsChecked(getterType);
+                ExecutableElement setter = setter(beanType, setters.get("set" + cap), type);
+                if (setter != null) {
+                    write = setter.getSimpleName().toString();
+                    writeChecked = throwsChecked((ExecutableType) types.asMemberOf(beanType, setter));
+                }
+            } else if (field != null) {
+                type = types.asMemberOf(beanType, field);
+                read = property;
+                if (!field.getModifiers().contains(Modifier.FINAL)) write = property;
+            } else continue;
+
+            String typeName = typeName(type);
+            String boxedType = type instanceof PrimitiveType
+                    ? types.boxedClass((PrimitiveType) type).getQualifiedName().toString() : typeName;
+            TypeElement nested = all.get(property);
+            TypeMirror elementType = elementType(type);
+            Element element = elementType instanceof DeclaredType ? ((DeclaredType) elementType).asElement() : null;
+            result.add(new BeanProperty(property, typeName, boxedType, read, write, isField,
+                    nested != null ? packageName(nested) : null,
+                    nested != null ? nested.getSimpleName().toString() : null,
+                    nested != null ? accessorName(nested) : null,
+                    element != null && elements.contains(element) ? accessorName((TypeElement) element) : null,
+                    readChecked, writeChecked));
+        }
+        return result;
+    }
+
+    /**
+     * qualified name of the accessor class of the bean, null if an upstream module generated none
+     */
+    private String accessorName(TypeElement bean) {
+        MetadataIndex.Entry upstream = upstream(bean);
+        String name = upstream != null ? upstream.accessorName : accessorPrefix + bean.getSimpleName();
+        return name != null ? packageName(bean) + "." + name : null;
+    }
+
+    /**
+     * type of the elements of an array, a list or a map with string keys as the indexed and mapped navigation
+     * methods take it, null for other types
+     */
+    private TypeMirror elementType(TypeMirror type) {
+        TypeMirror element = null;
+        if (type instanceof ArrayType) element = ((ArrayType) type).getComponentType();
+        else if (type instanceof DeclaredType) {
+            List<? extends TypeMirror> args = ((DeclaredType) type).getTypeArguments();
+            if (args.size() == 1 && isSubtype(type, List.class)) element = args.get(0);
+            else if (args.size() == 2 && isSubtype(type, Map.class) && args.get(0).toString().equals(String.class.getName()))
+                element = args.get(1);
+        }
+        return element instanceof WildcardType ? ((WildcardType) element).getExtendsBound() : element;
+    }
+
+    /**
+     * puts the method to the getters if it has no parameters or to the overloads of its name if it is a setter
+     */
+    private static void accessor(ExecutableElement method, Map<String, ExecutableElement> getters,
+                                 Map<String, List<ExecutableElement>> setters) {
+        String name = method.getSimpleName().toString();
+        int params = method.getParameters().size();
+        if (params == 0 && !getters.containsKey(name)) getters.put(name, method);
+        else if (params == 1 && name.startsWith("set")) {
+            List<ExecutableElement> overloads = setters.get(name);
+            if (overloads == null) setters.put(name, overloads = new ArrayList<ExecutableElement>(1));
+            overloads.add(method);
+        }
+    }
+
+    /**
+     * the overload whose parameter has the erasure of the property type, null if there is none
+     */
+    private ExecutableElement setter(DeclaredType beanType, List<ExecutableElement> overloads, TypeMirror type) {
+        if (overloads == null) return null;
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement setter : overloads) {
+            TypeMirror parameter = ((ExecutableType) types.asMemberOf(beanType, setter)).getParameterTypes().get(0);
+            if (types.isSameType(types.erasure(parameter), types.erasure(type))) return setter;
+        }
+        return null;
+    }
+
+    /**
+     * the method declares a thrown type that is neither a RuntimeException nor an Error
+     */
+    private boolean throwsChecked(ExecutableType method) {
+        for (TypeMirror thrown : method.getThrownTypes())
+            if (!isSubtype(thrown, RuntimeException.class) && !isSubtype(thrown, Error.class)) return true;
+        return false;
+    }
+
+    private String typeName(TypeMirror type) {
+        return hasTypeVariables(type) ? processingEnv.getTypeUtils().erasure(type).toString() : type.toString();
+    }
+
+    private static boolean hasTypeVariables(TypeMirror type) {
+        if (type.getKind() == TypeKind.TYPEVAR) return true;
+        if (type instanceof ArrayType) return hasTypeVariables(((ArrayType) type).getComponentType());
+        if (type instanceof WildcardType) {
+            WildcardType wildcard = (WildcardType) type;
+            return (wildcard.getExtendsBound() != null && hasTypeVariables(wildcard.getExtendsBound()))
+                    || (wildcard.getSuperBound() != null && hasTypeVariables(wildcard.getSuperBound()));
+        }
+        if (type instanceof DeclaredType)
+            for (TypeMirror arg : ((DeclaredType) type).getTypeArguments())
+                if (hasTypeVariables(arg)) return true;
+        return false;
+    }
+
+    public static String capitalize(String name) {
+        if (name == null || name.isEmpty()) return name;
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    public void generateAccessorInterface() {
+        String qualifiedName = JAVA_LANG + "." + ACCESSOR;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("public interface ").append(ACCESSOR).append("<T> {");
+            out.newLine();
+            out.indent().append("int size();");
+            out.newLine();
+            out.indent().append("String name(int ordinal);");
+            out.newLine();
+            out.indent().append("int ordinal(String name);");
+            out.newLine();
+            out.indent().append("boolean isWritable(int ordinal);");
+            out.newLine();
+            out.indent().append("Object get(T bean, int ordinal);");
+            out.newLine();
+            out.indent().append("void set(T bean, int ordinal, Object value);");
+            out.newLine();
+            out.indent().append("void copy(T from, T to);");
+            out.newLine();
+            out.indent().append("java.util.List<String> diff(T a, T b);");
+            out.newLine();
+            out.indent().append(ACCESSOR + "<?> " + NESTED_METHOD + "(int ordinal);");
+            out.newLine();
+            out.append("}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * generates the registry of the dense int ids of the metadata paths,
+     * the ids are looked up without locking and a new path is registered under the registry lock
+     */
+    public void generatePathRegistryClass() {
+        String qualifiedName = JAVA_LANG + "." + PATH_REGISTRY;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("import java.util.concurrent.ConcurrentHashMap;");
+            out.newLine();
+            out.append("import java.util.concurrent.ConcurrentMap;");
+            out.newLine();
+            out.append("import java.util.concurrent.atomic.AtomicReferenceArray;");
+            out.newLine();
+            out.newLine();
+            out.append("public final class " + PATH_REGISTRY + " {");
+            out.newLine();
+            out.indent().append("public static final int ROOT = 0;");
+            out.newLine();
+            out.newLine();
+            //the arrays are replaced under the lock before the size is published, readers check the size first,
+            //the children maps of the parent ids are published by the atomic array
+            out.indent().append("private static volatile AtomicReferenceArray<ConcurrentMap<String, Integer>> children =\n")
+                    .indent(3).append("new AtomicReferenceArray<ConcurrentMap<String, Integer>>(64);");
+            out.newLine();
+            out.indent().append("private static volatile String[] paths = new String[64];");
+            out.newLine();
+            out.indent().append("private static volatile int size;");
+            out.newLine();
+            out.newLine();
+            out.indent().append("static {\n")
+                    .indent(2).append("paths[ROOT] = \"\";\n")
+                    .indent(2).append("size = 1;\n")
+                    .indent().append("}");
+            out.newLine();
+            out.newLine();
+            out.indent().append("private " + PATH_REGISTRY + "() { }");
+            out.newLine();
+            out.newLine();
+            //a prefix of several segments, e.g. a path constant, registers them one by one as the navigation does
+            out.append("    public static int id(int parentId, String path) {\n" +
+                    "        int id = parentId;\n" +
+                    "        int start = 0;\n" +
+                    "        while (true) {\n" +
+                    "            int end = end(path, start);\n" +
+                    "            String segment = path.substring(start, end);\n" +
+                    "            int child = find(id, segment);\n" +
+                    "            id = child >= 0 ? child : register(id, segment);\n" +
+                    "            if (end == path.length()) return id;\n" +
+                    "            start = end + 1;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.indent().append("/**\n")
+                    .indent().append(" * id of a registered path, -1 if no node of the path has asked for its id\n")
+                    .indent().append(" */\n");
+            out.append("    public static int id(CharSequence path) {\n" +
+                    "        String text = path.toString();\n" +
+                    "        if (text.length() == 0) return ROOT;\n" +
+                    "        int id = ROOT;\n" +
+                    "        int start = 0;\n" +
+                    "        while (true) {\n" +
+                    "            int end = end(text, start);\n" +
+                    "            id = find(id, text.substring(start, end));\n" +
+                    "            if (id < 0 || end == text.length()) return id;\n" +
+                    "            start = end + 1;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.append("    public static String path(int id) {\n" +
+                    "        if (id < 0 || id >= size) throw new IllegalArgumentException(\"unknown path id \" + id);\n" +
+                    "        return paths[id];\n" +
+                    "    }");
+            out.newLine();
+            out.indent().append("/**\n")
+                    .indent().append(" * number of the registered paths, the ids are less than it\n")
+                    .indent().append(" */\n");
+            out.indent().append("public static int size() { return size; }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static int find(int parentId, String segment) {\n" +
+                    "        AtomicReferenceArray<ConcurrentMap<String, Integer>> children = " + PATH_REGISTRY + ".children;\n" +
+                    "        if (parentId >= 0 && parentId < children.length()) {\n" +
+                    "            ConcurrentMap<String, Integer> ids = children.get(parentId);\n" +
+                    "            if (ids != null) {\n" +
+                    "                Integer id = ids.get(segment);\n" +
+                    "                if (id != null) return id;\n" +
+                    "            }\n" +
+                    "        }\n" +
+                    "        return -1;\n" +
+                    "    }");
+            out.newLine();
+            //the dots of the map keys do not end the segments
+            out.append("    private static int end(String path, int start) {\n" +
+                    "        int depth = 0;\n" +
+                    "        for (int i = start; i < path.length(); i++) {\n" +
+                    "            char c = path.charAt(i);\n" +
+                    "            if (c == '(' || c == '[') depth++;\n" +
+                    "            else if ((c == ')' || c == ']') && depth > 0) depth--;\n" +
+                    "            else if (c == '.' && depth == 0) return i;\n" +
+                    "        }\n" +
+                    "        return path.length();\n" +
+                    "    }");
+            out.newLine();
+            out.append("    private static synchronized int register(int parentId, String segment) {\n" +
+                    "        if (parentId < 0 || parentId >= size) throw new IllegalArgumentException(\"unknown path id \" + parentId);\n" +
+                    "        AtomicReferenceArray<ConcurrentMap<String, Integer>> children = " + PATH_REGISTRY + ".children;\n" +
+                    "        ConcurrentMap<String, Integer> ids = children.get(parentId);\n" +
+                    "        if (ids == null && !children.compareAndSet(parentId, null, ids = new ConcurrentHashMap<String, Integer>(4)))\n" +
+                    "            ids = children.get(parentId);\n" +
+                    "        Integer registered = ids.get(segment);\n" +
+                    "        if (registered != null) return registered;\n" +
+                    "        int id = size;\n" +
+                    "        if (id == paths.length) {\n" +
+                    "            AtomicReferenceArray<ConcurrentMap<String, Integer>> grown =\n" +
+                    "                    new AtomicReferenceArray<ConcurrentMap<String, Integer>>(id * 2);\n" +
+                    "            for (int i = 0; i < id; i++) grown.set(i, children.get(i));\n" +
+                    "            String[] grownPaths = new String[id * 2];\n" +
+                    "            System.arraycopy(paths, 0, grownPaths, 0, id);\n" +
+                    "            " + PATH_REGISTRY + ".children = grown;\n" +
+                    "            paths = grownPaths;\n" +
+                    "        }\n" +
+                    "        String parentPath = paths[parentId];\n" +
+                    "        paths[id] = parentPath.length() == 0 ? segment : parentPath + '.' + segment;\n" +
+                    "        size = id + 1;\n" +
+                    "        ids.put(segment, id);\n" +
+                    "        return id;\n" +
+                    "    }");
+            out.newLine();
+            out.append("}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * generates the interface of the dirty tracking subclasses
+     */
+    public void generateTrackedInterface() {
+        String qualifiedName = JAVA_LANG + "." + TRACKED;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("public interface ").append(TRACKED).append(" {");
+            out.newLine();
+            out.indent().append("boolean isDirty();");
+            out.newLine();
+            out.indent().append("boolean isDirty(int ordinal);");
+            out.newLine();
+            out.indent().append("void clearDirty();");
+            out.newLine();
+            out.indent().append("java.util.List<String> dirtyPaths();");
+            out.newLine();
+            out.append("}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * generates the null safe getter chains of the metadata nodes, they are compiled to the accessor calls
+     * and cached by the root accessor and the node path, up to MAX_CACHED paths per root accessor
+     */
+    public void generateGetterClass() {
+        String qualifiedName = JAVA_LANG + "." + GETTER;
+        String node = getObjectClassName();
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("import java.util.ArrayList;");
+            out.newLine();
+            out.append("import java.util.Iterator;");
+            out.newLine();
+            out.append("import java.util.List;");
+            out.newLine();
+            out.append("import java.util.Map;");
+            out.newLine();
+            out.append("import java.util.concurrent.ConcurrentHashMap;");
+            out.newLine();
+            out.append("import java.util.concurrent.ConcurrentMap;");
+            out.newLine();
+            out.newLine();
+            out.append("public final class " + GETTER + " implements " + PROPERTY_READER + " {");
+            out.newLine();
+            out.indent().append("private static final ConcurrentMap<" + ACCESSOR + "<?>, ConcurrentMap<" + node + ", " + GETTER + ">> CACHE =\n")
+                    .indent(3).append("new ConcurrentHashMap<" + ACCESSOR + "<?>, ConcurrentMap<" + node + ", " + GETTER + ">>();");
+            out.newLine();
+            //the indexed and mapped nodes make a path per index or key, past it a new path drops a cached one
+            out.indent().append("private static final int MAX_CACHED = 1024;");
+            out.newLine();
+            out.newLine();
+            out.indent().append("private final String path;");
+            out.newLine();
+            //the chain is read by the projections too
+            out.indent().append("final " + ACCESSOR + "<?>[] accessors;");
+            out.newLine();
+            out.indent().append("final int[] ordinals;");
+            out.newLine();
+            out.indent().append("final int[] indexes;");
+            out.newLine();
+            out.indent().append("final String[] keys;");
+            out.newLine();
+            out.newLine();
+            out.indent().append("private " + GETTER + "(String path, " + ACCESSOR + "<?>[] accessors, int[] ordinals, int[] indexes, String[] keys) {\n")
+                    .indent(2).append("this.path = path;\n")
+                    .indent(2).append("this.accessors = accessors;\n")
+                    .indent(2).append("this.ordinals = ordinals;\n")
+                    .indent(2).append("this.indexes = indexes;\n")
+                    .indent(2).append("this.keys = keys;\n")
+                    .indent().append("}");
+            out.newLine();
+            out.newLine();
+            //the chain is compiled once per root accessor and path, the map lookups allocate nothing
+            out.append("    public static " + GETTER + " of(" + node + " node) {\n" +
+                    "        " + ACCESSOR + "<?> root = root(node)." + ACCESSOR_METHOD + "();\n" +
+                    "        if (root == null) throw new IllegalArgumentException(\"no accessor of the root bean of \" + node);\n" +
+                    "        ConcurrentMap<" + node + ", " + GETTER + "> getters = CACHE.get(root);\n" +
+                    "        if (getters == null) {\n" +
+                    "            ConcurrentMap<" + node + ", " + GETTER + "> created = new ConcurrentHashMap<" + node + ", " + GETTER + ">();\n" +
+                    "            getters = CACHE.putIfAbsent(root, created);\n" +
+                    "            if (getters == null) getters = created;\n" +
+                    "        }\n" +
+                    "        " + GETTER + " getter = getters.get(node);\n" +
+                    "        if (getter == null) {\n" +
+                    "            " + GETTER + " compiled = compile(node);\n" +
+                    "            if (getters.size() >= MAX_CACHED) {\n" +
+                    "                Iterator<" + node + "> cached = getters.keySet().iterator();\n" +
+                    "                if (cached.hasNext()) {\n" +
+                    "                    cached.next();\n" +
+                    "                    cached.remove();\n" +
+                    "                }\n" +
+                    "            }\n" +
+                    "            getter = getters.putIfAbsent(node, compiled);\n" +
+                    "            if (getter == null) getter = compiled;\n" +
+                    "        }\n" +
+                    "        return getter;\n" +
+                    "    }");
+            out.newLine();
+            out.append("    public static " + GETTER + " of(" + node + " parent, String property) {\n" +
+                    "        return of(new " + node + "(property, parent));\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static " + node + " root(" + node + " node) {\n" +
+                    "        " + node + " root = node;\n" +
+                    "        while (root." + PARENT + " != null) root = root." + PARENT + ";\n" +
+                    "        if (!isEmpty(root)) throw new IllegalArgumentException(\"path \" + node + \" does not start at a bean node\");\n" +
+                    "        return root;\n" +
+                    "    }");
+            out.newLine();
+            out.append("    private static boolean isEmpty(" + node + " node) {\n" +
+                    "        return node." + _PREFIX + " == null || node." + _PREFIX + ".length() == 0;\n" +
+                    "    }");
+            out.newLine();
+            out.append("    private static " + GETTER + " compile(" + node + " node) {\n" +
+                    "        int size = 0;\n" +
+                    "        for (" + node + " n = node; n." + PARENT + " != null; n = n." + PARENT + ") if (!isEmpty(n)) size++;\n" +
+                    "        " + ACCESSOR + "<?>[] accessors = new " + ACCESSOR + "<?>[size];\n" +
+                    "        int[] ordinals = new int[size];\n" +
+                    "        int[] indexes = new int[size];\n" +
+                    "        String[] keys = new String[size];\n" +
+                    "        for (" + node + " n = node; n." + PARENT + " != null; n = n." + PARENT + ") {\n" +
+                    "            if (isEmpty(n)) continue;\n" +
+                    "            " + ACCESSOR + "<?> accessor = n." + PARENT + "." + ACCESSOR_METHOD + "();\n" +
+                    "            if (accessor == null) throw new IllegalArgumentException(\"no accessor of \" + n." + PARENT + " + \" in \" + node);\n" +
+                    "            String segment = n." + _PREFIX + ";\n" +
+                    "            String name = segment;\n" +
+                    "            int index = -1;\n" +
+                    "            String key = null;\n" +
+                    "            int open = open(segment);\n" +
+                    "            if (open > 0 && segment.charAt(open) == '[') {\n" +
+                    "                index = index(segment, open);\n" +
+                    "                if (index < 0) throw new IllegalArgumentException(\"illegal index of \" + segment + \" in \" + node);\n" +
+                    "            } else if (open > 0 && segment.charAt(open) == '(') key = segment.substring(open + 1, segment.length() - 1);\n" +
+                    "            if (open > 0) name = segment.substring(0, open);\n" +
+                    "            int ordinal = accessor.ordinal(name);\n" +
+                    "            if (ordinal < 0) throw new IllegalArgumentException(\"unknown property \" + name + \" in \" + node);\n" +
+                    "            size--;\n" +
+                    "            accessors[size] = accessor;\n" +
+                    "            ordinals[size] = ordinal;\n" +
+                    "            indexes[size] = index;\n" +
+                    "            keys[size] = key;\n" +
+                    "        }\n" +
+                    "        return new " + GETTER + "(node." + FULL_PATH + "(), accessors, ordinals, indexes, keys);\n" +
+                    "    }");
+            out.newLine();
+            //a path string of the root accessor, null if a segment is unknown or its bean has no accessor
+            out.append("    public static " + GETTER + " compile(" + ACCESSOR + "<?> root, String path) {\n" +
+                    "        List<String> segments = segments(path);\n" +
+                    "        int size = segments.size();\n" +
+                    "        " + ACCESSOR + "<?>[] accessors = new " + ACCESSOR + "<?>[size];\n" +
+                    "        int[] ordinals = new int[size];\n" +
+                    "        int[] indexes = new int[size];\n" +
+                    "        String[] keys = new String[size];\n" +
+                    "        " + ACCESSOR + "<?> accessor = root;\n" +
+                    "        for (int i = 0; i < size; i++) {\n" +
+                    "            if (accessor == null) return null;\n" +
+                    "            String segment = segments.get(i);\n" +
+                    "            int open = open(segment);\n" +
+                    "            indexes[i] = -1;\n" +
+                    "            if (open > 0 && segment.charAt(open) == '[') {\n" +
+                    "                indexes[i] = index(segment, open);\n" +
+                    "                if (indexes[i] < 0) return null;\n" +
+                    "            } else if (open > 0 && segment.charAt(open) == '(') keys[i] = segment.substring(open + 1, segment.length() - 1);\n" +
+                    "            int ordinal = accessor.ordinal(open > 0 ? segment.substring(0, open) : segment);\n" +
+                    "            if (ordinal < 0) return null;\n" +
+                    "            accessors[i] = accessor;\n" +
+                    "            ordinals[i] = ordinal;\n" +
+                    "            accessor = accessor." + NESTED_METHOD + "(ordinal);\n" +
+                    "        }\n" +
+                    "        return new " + GETTER + "(path, accessors, ordinals, indexes, keys);\n" +
+                    "    }");
+            out.newLine();
+            //the dots of the map keys do not split the segments
+            out.append("    static List<String> segments(String path) {\n" +
+                    "        List<String> segments = new ArrayList<String>();\n" +
+                    "        int start = 0;\n" +
+                    "        int depth = 0;\n" +
+                    "        for (int i = 0; i < path.length(); i++) {\n" +
+                    "            char c = path.charAt(i);\n" +
+                    "            if (c == '(' || c == '[') depth++;\n" +
+                    "            else if ((c == ')' || c == ']') && depth > 0) depth--;\n" +
+                    "            else if (c == '.' && depth == 0) {\n" +
+                    "                segments.add(path.substring(start, i));\n" +
+                    "                start = i + 1;\n" +
+                    "            }\n" +
+                    "        }\n" +
+                    "        segments.add(path.substring(start));\n" +
+                    "        return segments;\n" +
+                    "    }");
+            out.newLine();
+            //the index of an indexed segment, -1 if it is not a non negative int
+            out.append("    static int index(String segment, int open) {\n" +
+                    "        try {\n" +
+                    "            int index = Integer.parseInt(segment.substring(open + 1, segment.length() - 1));\n" +
+                    "            return index >= 0 ? index : -1;\n" +
+                    "        } catch (NumberFormatException e) {\n" +
+                    "            return -1;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            //position of the bracket of an indexed or mapped segment, -1 for a plain property
+            out.append("    static int open(String segment) {\n" +
+                    "        int last = segment.length() - 1;\n" +
+                    "        if (last < 0) return -1;\n" +
+                    "        char close = segment.charAt(last);\n" +
+                    "        return close == ']' ? segment.indexOf('[') : close == ')' ? segment.indexOf('(') : -1;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    @SuppressWarnings(\"unchecked\")\n" +
+                    "    public Object get(Object bean) {\n" +
+                    "        Object value = bean;\n" +
+                    "        for (int i = 0; i < accessors.length; i++) {\n" +
+                    "            if (value == null) return null;\n" +
+                    "            value = ((" + ACCESSOR + "<Object>) accessors[i]).get(value, ordinals[i]);\n" +
+                    "            if (keys[i] != null) value = value instanceof Map ? ((Map<?, ?>) value).get(keys[i]) : null;\n" +
+                    "            else if (indexes[i] >= 0) value = element(value, indexes[i]);\n" +
+                    "        }\n" +
+                    "        return value;\n" +
+                    "    }");
+            out.newLine();
+            out.append("    static Object element(Object value, int index) {\n" +
+                    "        if (value instanceof List) {\n" +
+                    "            List<?> list = (List<?>) value;\n" +
+                    "            return index < list.size() ? list.get(index) : null;\n" +
+                    "        }\n" +
+                    "        if (value instanceof Object[]) {\n" +
+                    "            Object[] array = (Object[]) value;\n" +
+                    "            return index < array.length ? array[index] : null;\n" +
+                    "        }\n" +
+                    "        return null;\n" +
+                    "    }");
+            out.newLine();
+            out.indent().append("public String path() { return path; }");
+            out.newLine();
+            out.indent().append("public String toString() { return path; }");
+            out.newLine();
+            out.append("}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    public void generatePropertyReaderInterface() {
+        String qualifiedName = JAVA_LANG + "." + PROPERTY_READER;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("public interface " + PROPERTY_READER + " {\n" +
+                    "    Object get(Object bean);\n" +
+                    "}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    public void generatePropertyResolverInterface() {
+        String qualifiedName = JAVA_LANG + "." + PROPERTY_RESOLVER;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("public interface " + PROPERTY_RESOLVER + " {\n" +
+                    "    " + PROPERTY_READER + " resolve(Class<?> type, String path);\n" +
+                    "}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    public void generateReflectiveResolverClass() {
+        String qualifiedName = JAVA_LANG + "." + REFLECTIVE_RESOLVER;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("import java.lang.reflect.Field;\n" +
+                    "import java.lang.reflect.InvocationTargetException;\n" +
+                    "import java.lang.reflect.Method;\n" +
+                    "import java.lang.reflect.Modifier;\n" +
+                    "import java.util.List;\n" +
+                    "import java.util.Map;");
+            out.newLine();
+            out.newLine();
+            out.append("public class " + REFLECTIVE_RESOLVER + " implements " + PROPERTY_RESOLVER + " {");
+            out.newLine();
+            out.newLine();
+            out.append("    public " + PROPERTY_READER + " resolve(Class<?> type, String path) {\n" +
+                    "        List<String> segments = " + GETTER + ".segments(path);\n" +
+                    "        int size = segments.size();\n" +
+                    "        String[] names = new String[size];\n" +
+                    "        int[] indexes = new int[size];\n" +
+                    "        String[] keys = new String[size];\n" +
+                    "        for (int i = 0; i < size; i++) {\n" +
+                    "            String segment = segments.get(i);\n" +
+                    "            int open = " + GETTER + ".open(segment);\n" +
+                    "            names[i] = open > 0 ? segment.substring(0, open) : segment;\n" +
+                    "            indexes[i] = open > 0 && segment.charAt(open) == '[' ? " + GETTER + ".index(segment, open) : -1;\n" +
+                    "            keys[i] = open > 0 && segment.charAt(open) == '(' ? segment.substring(open + 1, segment.length() - 1) : null;\n" +
+                    "            if (names[i].length() == 0 || (indexes[i] < 0 && open > 0 && keys[i] == null)) return null;\n" +
+                    "        }\n" +
+                    "        //the next segments are bound to the runtime classes of the values\n" +
+                    "        Step first = step(type, names[0]);\n" +
+                    "        if (first == null) return null;\n" +
+                    "        Reader reader = new Reader(path, names, indexes, keys);\n" +
+                    "        reader.steps[0] = first;\n" +
+                    "        return reader;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static final class Reader implements " + PROPERTY_READER + " {\n" +
+                    "        private final String path;\n" +
+                    "        private final String[] names;\n" +
+                    "        private final int[] indexes;\n" +
+                    "        private final String[] keys;\n" +
+                    "        //the member read last by a segment, it is looked up again when the class of the value changes\n" +
+                    "        private final Step[] steps;");
+            out.newLine();
+            out.newLine();
+            out.append("        private Reader(String path, String[] names, int[] indexes, String[] keys) {\n" +
+                    "            this.path = path;\n" +
+                    "            this.names = names;\n" +
+                    "            this.indexes = indexes;\n" +
+                    "            this.keys = keys;\n" +
+                    "            this.steps = new Step[names.length];\n" +
+                    "        }");
+            out.newLine();
+            out.newLine();
+            out.append("        public Object get(Object bean) {\n" +
+                    "            Object value = bean;\n" +
+                    "            for (int i = 0; i < steps.length; i++) {\n" +
+                    "                if (value == null) return null;\n" +
+                    "                Step step = steps[i];\n" +
+                    "                if (step == null || step.type != value.getClass()) {\n" +
+                    "                    step = step(value.getClass(), names[i]);\n" +
+                    "                    if (step == null) throw new IllegalArgumentException(\"unknown property \" + names[i] + \" of \" + value.getClass().getName() + \" in \" + path);\n" +
+                    "                    steps[i] = step;\n" +
+                    "                }\n" +
+                    "                value = step.read(value);\n" +
+                    "                if (keys[i] != null) value = value instanceof Map ? ((Map<?, ?>) value).get(keys[i]) : null;\n" +
+                    "                else if (indexes[i] >= 0) value = " + GETTER + ".element(value, indexes[i]);\n" +
+                    "            }\n" +
+                    "            return value;\n" +
+                    "        }");
+            out.newLine();
+            out.newLine();
+            out.append("        public String toString() {\n" +
+                    "            return path;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static final class Step {\n" +
+                    "        private final Class<?> type;\n" +
+                    "        private final Method method;\n" +
+                    "        private final Field field;");
+            out.newLine();
+            out.newLine();
+            out.append("        private Step(Class<?> type, Method method, Field field) {\n" +
+                    "            this.type = type;\n" +
+                    "            this.method = method;\n" +
+                    "            this.field = field;\n" +
+                    "        }");
+            out.newLine();
+            out.newLine();
+            out.append("        private Object read(Object bean) {\n" +
+                    "            try {\n" +
+                    "                return method != null ? method.invoke(bean) : field.get(bean);\n" +
+                    "            } catch (IllegalAccessException e) {\n" +
+                    "                throw new IllegalStateException(e);\n" +
+                    "            } catch (InvocationTargetException e) {\n" +
+                    "                Throwable cause = e.getCause();\n" +
+                    "                if (cause instanceof RuntimeException) throw (RuntimeException) cause;\n" +
+                    "                if (cause instanceof Error) throw (Error) cause;\n" +
+                    "                throw new IllegalStateException(cause);\n" +
+                    "            }\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            //the getter, the boolean is-getter or the public field of the property, as the processor looks them up
+            out.append("    private static Step step(Class<?> type, String name) {\n" +
+                    "        String cap = Character.toUpperCase(name.charAt(0)) + name.substring(1);\n" +
+                    "        Method method = method(type, \"get\" + cap);\n" +
+                    "        Method isMethod = method(type, \"is\" + cap);\n" +
+                    "        if (isMethod != null && isMethod.getReturnType() == boolean.class) method = isMethod;\n" +
+                    "        if (method != null) return new Step(type, accessible(method), null);\n" +
+                    "        try {\n" +
+                    "            Field field = type.getField(name);\n" +
+                    "            if (!Modifier.isStatic(field.getModifiers())) return new Step(type, null, accessible(field));\n" +
+                    "        } catch (NoSuchFieldException e) {\n" +
+                    "            //no public field\n" +
+                    "        }\n" +
+                    "        return null;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static Method method(Class<?> type, String name) {\n" +
+                    "        try {\n" +
+                    "            Method method = type.getMethod(name);\n" +
+                    "            return Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class ? null : method;\n" +
+                    "        } catch (NoSuchMethodException e) {\n" +
+                    "            return null;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            //public members of not public classes are not accessible by default
+            out.append("    private static <M extends java.lang.reflect.AccessibleObject & java.lang.reflect.Member> M accessible(M member) {\n" +
+                    "        if (!Modifier.isPublic(member.getDeclaringClass().getModifiers())) try {\n" +
+                    "            member.setAccessible(true);\n" +
+                    "        } catch (RuntimeException e) {\n" +
+                    "            //the invocation fails with IllegalAccessException\n" +
+                    "        }\n" +
+                    "        return member;\n" +
+                    "    }\n" +
+                    "}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    public void generateCachingResolverClass() {
+        String qualifiedName = JAVA_LANG + "." + CACHING_RESOLVER;
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("import java.util.Iterator;\n" +
+                    "import java.util.concurrent.ConcurrentHashMap;\n" +
+                    "import java.util.concurrent.ConcurrentMap;\n" +
+                    "import java.util.concurrent.atomic.AtomicLong;");
+            out.newLine();
+            out.newLine();
+            out.append("public class " + CACHING_RESOLVER + " implements " + PROPERTY_RESOLVER + " {\n" +
+                    "    public static final int DEFAULT_SIZE = 1024;\n" +
+                    "    private static final String ACCESSOR_PREFIX = \"" + accessorPrefix + "\";\n" +
+                    "    private static final Object NO_ACCESSOR = new Object();\n" +
+                    "    private static final " + CACHING_RESOLVER + " DEFAULT = new " + CACHING_RESOLVER + "(new " + REFLECTIVE_RESOLVER + "(), DEFAULT_SIZE);");
+            out.newLine();
+            out.newLine();
+            out.append("    private final " + PROPERTY_RESOLVER + " fallback;\n" +
+                    "    //readers by the class and the path, the reads take no lock\n" +
+                    "    private final ConcurrentMap<Key, Entry> cache = new ConcurrentHashMap<Key, Entry>();\n" +
+                    "    private final int maxSize;\n" +
+                    "    //the clock hand of the second chance eviction, moved under the lock of evict()\n" +
+                    "    private Iterator<Entry> hand;\n" +
+                    "    private final ConcurrentMap<Class<?>, Object> accessors = new ConcurrentHashMap<Class<?>, Object>();\n" +
+                    "    private final AtomicLong hits = new AtomicLong();\n" +
+                    "    private final AtomicLong misses = new AtomicLong();\n" +
+                    "    private final AtomicLong fallbacks = new AtomicLong();");
+            out.newLine();
+            out.newLine();
+            out.append("    public " + CACHING_RESOLVER + "(" + PROPERTY_RESOLVER + " fallback, int maxSize) {\n" +
+                    "        this.fallback = fallback;\n" +
+                    "        this.maxSize = maxSize;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public static " + CACHING_RESOLVER + " getDefault() {\n" +
+                    "        return DEFAULT;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public " + PROPERTY_READER + " resolve(Class<?> type, String path) {\n" +
+                    "        Key key = new Key(type, path);\n" +
+                    "        Entry entry = cache.get(key);\n" +
+                    "        if (entry != null) {\n" +
+                    "            hits.incrementAndGet();\n" +
+                    "            if (!entry.used) entry.used = true;\n" +
+                    "            return entry.reader;\n" +
+                    "        }\n" +
+                    "        misses.incrementAndGet();\n" +
+                    "        " + ACCESSOR + "<?> accessor = accessor(type);\n" +
+                    "        " + PROPERTY_READER + " reader = accessor != null ? " + GETTER + ".compile(accessor, path) : null;\n" +
+                    "        if (reader == null) {\n" +
+                    "            fallbacks.incrementAndGet();\n" +
+                    "            reader = fallback.resolve(type, path);\n" +
+                    "        }\n" +
+                    "        if (reader == null) return null;\n" +
+                    "        if (cache.size() >= maxSize) evict();\n" +
+                    "        Entry cached = cache.putIfAbsent(key, new Entry(reader));\n" +
+                    "        return cached != null ? cached.reader : reader;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            //an entry read since the hand passed it is kept for one more round, the first one not read is removed
+            out.append("    private synchronized void evict() {\n" +
+                    "        while (cache.size() >= maxSize) {\n" +
+                    "            if (hand == null || !hand.hasNext()) hand = cache.values().iterator();\n" +
+                    "            if (!hand.hasNext()) return;\n" +
+                    "            Entry entry = hand.next();\n" +
+                    "            if (entry.used) entry.used = false;\n" +
+                    "            else hand.remove();\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public Object get(Object bean, String path) {\n" +
+                    "        " + PROPERTY_READER + " reader = resolve(bean.getClass(), path);\n" +
+                    "        if (reader == null) throw new IllegalArgumentException(\"unknown property \" + path + \" of \" + bean.getClass().getName());\n" +
+                    "        return reader.get(bean);\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            //the generated accessor of the class or of the nearest superclass, null if there is none
+            out.append("    public " + ACCESSOR + "<?> accessor(Class<?> type) {\n" +
+                    "        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {\n" +
+                    "            Object accessor = accessors.get(c);\n" +
+                    "            if (accessor == null) {\n" +
+                    "                accessor = load(c);\n" +
+                    "                accessors.putIfAbsent(c, accessor);\n" +
+                    "            }\n" +
+                    "            if (accessor != NO_ACCESSOR) return (" + ACCESSOR + "<?>) accessor;\n" +
+                    "        }\n" +
+                    "        return null;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static Object load(Class<?> type) {\n" +
+                    "        String name = type.getName();\n" +
+                    "        if (type.isArray() || type.isPrimitive() || name.indexOf('$') >= 0) return NO_ACCESSOR;\n" +
+                    "        int dot = name.lastIndexOf('.');\n" +
+                    "        try {\n" +
+                    "            Class<?> accessorClass = Class.forName(name.substring(0, dot + 1) + ACCESSOR_PREFIX + name.substring(dot + 1),\n" +
+                    "                    true, type.getClassLoader());\n" +
+                    "            Object accessor = accessorClass.getField(\"INSTANCE\").get(null);\n" +
+                    "            return accessor instanceof " + ACCESSOR + " ? accessor : NO_ACCESSOR;\n" +
+                    "        } catch (ClassNotFoundException e) {\n" +
+                    "            return NO_ACCESSOR;\n" +
+                    "        } catch (NoSuchFieldException e) {\n" +
+                    "            return NO_ACCESSOR;\n" +
+                    "        } catch (IllegalAccessException e) {\n" +
+                    "            return NO_ACCESSOR;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public long hits() {\n" +
+                    "        return hits.get();\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public long misses() {\n" +
+                    "        return misses.get();\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            //paths the generated accessors do not cover, resolved by the fallback
+            out.append("    public long fallbacks() {\n" +
+                    "        return fallbacks.get();\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public int size() {\n" +
+                    "        return cache.size();\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public void clear() {\n" +
+                    "        cache.clear();\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static final class Entry {\n" +
+                    "        private final " + PROPERTY_READER + " reader;\n" +
+                    "        //set by the hits, cleared by the eviction hand passing the entry\n" +
+                    "        private volatile boolean used;");
+            out.newLine();
+            out.newLine();
+            out.append("        private Entry(" + PROPERTY_READER + " reader) {\n" +
+                    "            this.reader = reader;\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static final class Key {\n" +
+                    "        private final Class<?> type;\n" +
+                    "        private final String path;");
+            out.newLine();
+            out.newLine();
+            out.append("        private Key(Class<?> type, String path) {\n" +
+                    "            this.type = type;\n" +
+                    "            this.path = path;\n" +
+                    "        }");
+            out.newLine();
+            out.newLine();
+            out.append("        @Override\n" +
+                    "        public boolean equals(Object o) {\n" +
+                    "            if (!(o instanceof Key)) return false;\n" +
+                    "            Key key = (Key) o;\n" +
+                    "            return type == key.type && path.equals(key.path);\n" +
+                    "        }");
+            out.newLine();
+            out.newLine();
+            out.append("        @Override\n" +
+                    "        public int hashCode() {\n" +
+                    "            return 31 * type.hashCode() + path.hashCode();\n" +
+                    "        }\n" +
+                    "    }\n" +
+                    "}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
+        }
+    }
+
+    public void generateProjectionClass() {
+        String qualifiedName = JAVA_LANG + "." + PROJECTION;
+        String node = getObjectClassName();
+        SourceWriter out = sourceWriter;
+        try {
+            generated.add(qualifiedName);
+            JavaFileObject jfo = processingEnv.getFiler().createSourceFile(qualifiedName);
+            out.open(jfo.openWriter());
+            out.append("package ").append(JAVA_LANG).append(";");
+            out.newLine();
+            out.newLine();
+            out.append("import java.util.ArrayList;\n" +
+                    "import java.util.Iterator;\n" +
+                    "import java.util.List;\n" +
+                    "import java.util.Map;\n" +
+                    "import java.util.NoSuchElementException;");
+            out.newLine();
+            out.newLine();
+            out.append("public final class " + PROJECTION + " {\n" +
+                    "    private static final int[] NO_COLUMNS = new int[0];");
+            out.newLine();
+            out.newLine();
+            out.append("    private final String[] paths;\n" +
+                    "    //the prefix tree of the paths, a tree node reads one property of the value of its parent node\n" +
+                    "    private final " + ACCESSOR + "<?>[] accessors;\n" +
+                    "    private final int[] ordinals;\n" +
+                    "    private final int[] indexes;\n" +
+                    "    private final String[] keys;\n" +
+                    "    private final int[] firstChild;\n" +
+                    "    private final int[] nextSibling;\n" +
+                    "    private final int[][] columns;");
+            out.newLine();
+            out.newLine();
+            out.append("    private " + PROJECTION + "(String[] paths, List<" + GETTER + "> getters) {\n" +
+                    "        this.paths = paths;\n" +
+                    "        List<int[]> columnLists = new ArrayList<int[]>();\n" +
+                    "        List<" + GETTER + "> segments = new ArrayList<" + GETTER + ">();\n" +
+                    "        List<Integer> levels = new ArrayList<Integer>();\n" +
+                    "        List<Integer> children = new ArrayList<Integer>();\n" +
+                    "        List<Integer> siblings = new ArrayList<Integer>();\n" +
+                    "        for (int column = 0; column < getters.size(); column++) {\n" +
+                    "            " + GETTER + " getter = getters.get(column);\n" +
+                    "            int parent = -1;\n" +
+                    "            for (int level = 0; level < getter.accessors.length; level++) {\n" +
+                    "                int n = parent < 0 ? (segments.isEmpty() ? -1 : 0) : children.get(parent);\n" +
+                    "                int last = -1;\n" +
+                    "                while (n >= 0 && !same(segments.get(n), levels.get(n), getter, level)) {\n" +
+                    "                    last = n;\n" +
+                    "                    n = siblings.get(n);\n" +
+                    "                }\n" +
+                    "                if (n < 0) {\n" +
+                    "                    n = segments.size();\n" +
+                    "                    segments.add(getter);\n" +
+                    "                    levels.add(level);\n" +
+                    "                    children.add(-1);\n" +
+                    "                    siblings.add(-1);\n" +
+                    "                    columnLists.add(NO_COLUMNS);\n" +
+                    "                    if (last >= 0) siblings.set(last, n);\n" +
+                    "                    else if (parent >= 0) children.set(parent, n);\n" +
+                    "                }\n" +
+                    "                parent = n;\n" +
+                    "            }\n" +
+                    "            int[] previous = columnLists.get(parent);\n" +
+                    "            int[] merged = new int[previous.length + 1];\n" +
+                    "            System.arraycopy(previous, 0, merged, 0, previous.length);\n" +
+                    "            merged[previous.length] = column;\n" +
+                    "            columnLists.set(parent, merged);\n" +
+                    "        }\n" +
+                    "        int size = segments.size();\n" +
+                    "        accessors = new " + ACCESSOR + "<?>[size];\n" +
+                    "        ordinals = new int[size];\n" +
+                    "        indexes = new int[size];\n" +
+                    "        keys = new String[size];\n" +
+                    "        firstChild = new int[size];\n" +
+                    "        nextSibling = new int[size];\n" +
+                    "        columns = new int[size][];\n" +
+                    "        for (int n = 0; n < size; n++) {\n" +
+                    "            " + GETTER + " getter = segments.get(n);\n" +
+                    "            int level = levels.get(n);\n" +
+                    "            accessors[n] = getter.accessors[level];\n" +
+                    "            ordinals[n] = getter.ordinals[level];\n" +
+                    "            indexes[n] = getter.indexes[level];\n" +
+                    "            keys[n] = getter.keys[level];\n" +
+                    "            firstChild[n] = children.get(n);\n" +
+                    "            nextSibling[n] = siblings.get(n);\n" +
+                    "            columns[n] = columnLists.get(n);\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    private static boolean same(" + GETTER + " a, int aLevel, " + GETTER + " b, int bLevel) {\n" +
+                    "        String aKey = a.keys[aLevel];\n" +
+                    "        String bKey = b.keys[bLevel];\n" +
+                    "        return a.accessors[aLevel] == b.accessors[bLevel] && a.ordinals[aLevel] == b.ordinals[bLevel]\n" +
+                    "                && a.indexes[aLevel] == b.indexes[bLevel] && (aKey == null ? bKey == null : aKey.equals(bKey));\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public static " + PROJECTION + " of(" + node + "... nodes) {\n" +
+                    "        String[] paths = new String[nodes.length];\n" +
+                    "        List<" + GETTER + "> getters = new ArrayList<" + GETTER + ">(nodes.length);\n" +
+                    "        " + ACCESSOR + "<?> root = null;\n" +
+                    "        for (int i = 0; i < nodes.length; i++) {\n" +
+                    "            " + GETTER + " getter = " + GETTER + ".of(nodes[i]);\n" +
+                    "            if (getter.accessors.length == 0) throw new IllegalArgumentException(\"empty path of column \" + i);\n" +
+                    "            if (root == null) root = getter.accessors[0];\n" +
+                    "            else if (root != getter.accessors[0]) throw new IllegalArgumentException(\"path \" + nodes[i] + \" is not of the bean of \" + nodes[0]);\n" +
+                    "            paths[i] = getter.path();\n" +
+                    "            getters.add(getter);\n" +
+                    "        }\n" +
+                    "        return new " + PROJECTION + "(paths, getters);\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public int width() {\n" +
+                    "        return paths.length;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public String path(int column) {\n" +
+                    "        return paths[column];\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public Object[] fill(Object bean, Object[] row) {\n" +
+                    "        if (accessors.length > 0) fill(0, bean, row);\n" +
+                    "        return row;\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            //the stack holds the values of the prefixes, so no row allocates
+            out.append("    @SuppressWarnings(\"unchecked\")\n" +
+                    "    private void fill(int first, Object owner, Object[] row) {\n" +
+                    "        for (int n = first; n >= 0; n = nextSibling[n]) {\n" +
+                    "            Object value = null;\n" +
+                    "            if (owner != null) {\n" +
+                    "                value = ((" + ACCESSOR + "<Object>) accessors[n]).get(owner, ordinals[n]);\n" +
+                    "                if (keys[n] != null) value = value instanceof Map ? ((Map<?, ?>) value).get(keys[n]) : null;\n" +
+                    "                else if (indexes[n] >= 0) value = " + GETTER + ".element(value, indexes[n]);\n" +
+                    "            }\n" +
+                    "            for (int column : columns[n]) row[column] = value;\n" +
+                    "            if (firstChild[n] >= 0) fill(firstChild[n], value, row);\n" +
+                    "        }\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public Iterator<Object[]> rows(final Iterator<?> beans) {\n" +
+                    "        return new Iterator<Object[]>() {\n" +
+                    "            private final Object[] row = new Object[paths.length];");
+            out.newLine();
+            out.newLine();
+            out.append("            public boolean hasNext() {\n" +
+                    "                return beans.hasNext();\n" +
+                    "            }");
+            out.newLine();
+            out.newLine();
+            out.append("            public Object[] next() {\n" +
+                    "                if (!beans.hasNext()) throw new NoSuchElementException();\n" +
+                    "                return fill(beans.next(), row);\n" +
+                    "            }");
+            out.newLine();
+            out.newLine();
+            out.append("            public void remove() {\n" +
+                    "                beans.remove();\n" +
+                    "            }\n" +
+                    "        };\n" +
+                    "    }");
+            out.newLine();
+            out.newLine();
+            out.append("    public String toString() {\n" +
+                    "        return java.util.Arrays.toString(paths);\n" +
+                    "    }\n" +
+                    "}");
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            close(out);
         }
     }
 
     public String metadataName(TypeElement elem, boolean isStatic, boolean isInterface) {
+        MetadataIndex.Entry upstream = upstream(elem);
+        if (upstream != null) return upstream.metadataName(isStatic, isInterface);
         return (isStatic ? getStaticPrefix() : isInterface ? getInterfacePrefix() : getPrefix()) + elem.getSimpleName().toString();
     }
 
+    /**
+     * the index entry of a bean generated by an upstream module, null for the beans of the round
+     */
+    private MetadataIndex.Entry upstream(TypeElement elem) {
+        return metadataIndex == null || roundElements == null || roundElements.contains(elem)
+                ? null : metadataIndex.upstream(elem);
+    }
+
     public String qualifiedMetadataName(TypeElement elem, boolean isStatic, boolean isInterface) {
         if (isObjectClass(elem)) return getFullObjectClassName();
         else return packageName(elem) + "." + metadataName(elem, isStatic, isInterface);
@@ -528,6 +2334,22 @@ public class BeanMetadataGenerator extends AbstractProcessor {
     }
 
 
+    /**
+     * properties of the type including the ones inherited from superclasses, superclass properties go first
+     */
+    public static Map<String, TypeElement> allProperties(TypeElement e, Set<? extends Element> elements) {
+        Map<String, TypeElement> result = new LinkedHashMap<String, TypeElement>();
+        TypeMirror superclass = e.getSuperclass();
+        if (superclass instanceof DeclaredType) {
+            TypeElement superElem = (TypeElement) ((DeclaredType) superclass).asElement();
+            if (!isObjectClass(superElem)) result.putAll(allProperties(superElem, elements));
+        }
+        Map<String, TypeElement> own = properties(e, elements);
+        for (String property : own.keySet())
+            if (!result.containsKey(property)) result.put(property, own.get(property));
+        return result;
+    }
+
     static void addFromType(TypeMirror type, Map<String, TypeElement> properties, Set<? extends Element> elements, boolean superclass) {
         while (type instanceof DeclaredType) {
             DeclaredType sdt = (DeclaredType) type;
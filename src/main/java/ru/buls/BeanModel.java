@@ -0,0 +1,202 @@
+package ru.buls;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of a bean taken from the javax.lang.model elements by the processor thread.
+ * It holds strings only, so the metadata sources of the bean can be rendered by any thread.
+ */
+public class BeanModel {
+    public final String packageName;
+    public final String simpleName;
+    /**
+     * simple name of the S* class, the P* classes refer its property constants
+     */
+    public final String staticClassName;
+    /**
+     * metadata classes in the generation order
+     */
+    public final List<MetadataClass> classes = new ArrayList<MetadataClass>();
+    /**
+     * properties of the metadata classes, see {@link BeanMetadataGenerator#properties}
+     */
+    public final List<Property> properties = new ArrayList<Property>();
+    /**
+     * nested path constants of the S* class by their names
+     */
+    public final Map<String, String> pathConstants = new LinkedHashMap<String, String>();
+    /**
+     * simple name of the accessor class, null if it is not generated
+     */
+    public String accessorName;
+    /**
+     * simple name of the P* class, the S* navigation nodes are its children if the accessor is generated
+     */
+    public String rootName;
+    /**
+     * all properties of the bean in ordinal order
+     */
+    public final List<BeanProperty> beanProperties = new ArrayList<BeanProperty>();
+    /**
+     * ordinal constant names of the bean properties, null for the ones skipped as duplicated
+     */
+    public final List<String> ordinalConstants = new ArrayList<String>();
+    /**
+     * simple name of the dirty tracking subclass, null if it is not generated
+     */
+    public String dirtyName;
+    /**
+     * constructors of the bean the dirty tracking subclass declares too
+     */
+    public final List<Constructor> constructors = new ArrayList<Constructor>();
+    /**
+     * setters the dirty tracking subclass overrides
+     */
+    public final List<Setter> trackedSetters = new ArrayList<Setter>();
+
+    public BeanModel(String packageName, String simpleName, String staticClassName) {
+        this.packageName = packageName;
+        this.simpleName = simpleName;
+        this.staticClassName = staticClassName;
+    }
+
+    /**
+     * declaration of a P*, IP* or S* class
+     */
+    public static class MetadataClass {
+        public final String name;
+        public final String qualifiedName;
+        public final boolean isStatic;
+        public final boolean isInterface;
+        /**
+         * superclass simple name or null
+         */
+        public final String extendsName;
+        /**
+         * the implemented interfaces continue the extends list, that is only for interfaces
+         */
+        public final boolean implementsListStarted;
+        public final List<String> implementsList;
+        public final List<String> imports;
+
+        public MetadataClass(String name, String qualifiedName, boolean isStatic, boolean isInterface,
+                             String extendsName, boolean implementsListStarted,
+                             List<String> implementsList, List<String> imports) {
+            this.name = name;
+            this.qualifiedName = qualifiedName;
+            this.isStatic = isStatic;
+            this.isInterface = isInterface;
+            this.extendsName = extendsName;
+            this.implementsListStarted = implementsListStarted;
+            this.implementsList = implementsList;
+            this.imports = imports;
+        }
+    }
+
+    /**
+     * not private constructor of a bean
+     */
+    public static class Constructor {
+        /**
+         * "public ", "protected " or empty for the package private ones
+         */
+        public final String access;
+        /**
+         * source of the parameter declarations, e.g. "java.lang.String a0, int a1"
+         */
+        public final String parameters;
+        /**
+         * the parameter names separated by commas
+         */
+        public final String arguments;
+        /**
+         * source of the thrown types separated by commas, empty if there are none
+         */
+        public final String exceptions;
+
+        public Constructor(String access, String parameters, String arguments, String exceptions) {
+            this.access = access;
+            this.parameters = parameters;
+            this.arguments = arguments;
+            this.exceptions = exceptions;
+        }
+    }
+
+    /**
+     * overridable setter of a bean property
+     */
+    public static class Setter {
+        /**
+         * ordinal of the property in {@link BeanModel#beanProperties}
+         */
+        public final int ordinal;
+        public final String property;
+        public final String name;
+        public final String parameterType;
+        /**
+         * "void" for the plain setters
+         */
+        public final String returnType;
+        /**
+         * source of the thrown types separated by commas, empty if there are none
+         */
+        public final String exceptions;
+
+        public Setter(int ordinal, String property, String name, String parameterType, String returnType,
+                      String exceptions) {
+            this.ordinal = ordinal;
+            this.property = property;
+            this.name = name;
+            this.parameterType = parameterType;
+            this.returnType = returnType;
+            this.exceptions = exceptions;
+        }
+    }
+
+    /**
+     * metadata property, nested ones have navigation methods
+     */
+    public static class Property {
+        public final String name;
+        /**
+         * simple name of the created metadata node class of a nested property, otherwise null
+         */
+        public final String nodeType;
+        /**
+         * simple name of the returned metadata type of a nested property, otherwise null
+         */
+        public final String returnType;
+        /**
+         * package of the metadata node classes of an indexed property, otherwise null
+         */
+        public final String nodePackage;
+        /**
+         * parameter type of the navigation method of a list or array (int) and map (String) property,
+         * the node types are of the elements then
+         */
+        public final String indexType;
+
+        public Property(String name, String nodeType, String returnType) {
+            this(name, nodeType, returnType, null, null);
+        }
+
+        public Property(String name, String nodeType, String returnType, String nodePackage, String indexType) {
+            this.name = name;
+            this.nodeType = nodeType;
+            this.returnType = returnType;
+            this.nodePackage = nodePackage;
+            this.indexType = indexType;
+        }
+
+        public boolean isNested() {
+            return nodeType != null && indexType == null;
+        }
+
+        public boolean isIndexed() {
+            return indexType != null;
+        }
+    }
+}
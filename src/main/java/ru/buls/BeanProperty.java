@@ -0,0 +1,81 @@
+package ru.buls;
+
+/**
+ * Readable bean property with the members used to access it.
+ */
+public class BeanProperty {
+    /**
+     * property name
+     */
+    public final String name;
+    /**
+     * source name of the property type, type variables are erased
+     */
+    public final String type;
+    /**
+     * the property type boxed if it is primitive
+     */
+    public final String boxedType;
+    /**
+     * expression reading the property of a "bean" variable
+     */
+    public final String read;
+    /**
+     * name of the setter method or the field, null for read only properties
+     */
+    public final String write;
+    /**
+     * the property is written by a field assignment instead of a setter call
+     */
+    public final boolean field;
+    /**
+     * package of the bean type of the property if it has generated metadata, otherwise null
+     */
+    public final String nestedPackage;
+    /**
+     * simple name of the bean type of the property if it has generated metadata, otherwise null
+     */
+    public final String nestedName;
+    /**
+     * qualified name of the accessor class of the nested bean, null if there is none
+     */
+    public final String nestedAccessor;
+    /**
+     * qualified name of the accessor class of the elements of an array, list or map property, null if there is none
+     */
+    public final String elementAccessor;
+    /**
+     * the getter declares checked exceptions, it is called by a try block rethrowing them unchecked
+     */
+    public final boolean readChecked;
+    /**
+     * the setter declares checked exceptions
+     */
+    public final boolean writeChecked;
+
+    public BeanProperty(String name, String type, String boxedType, String read, String write, boolean field,
+                        String nestedPackage, String nestedName, String nestedAccessor, String elementAccessor,
+                        boolean readChecked, boolean writeChecked) {
+        this.name = name;
+        this.type = type;
+        this.boxedType = boxedType;
+        this.read = read;
+        this.write = write;
+        this.field = field;
+        this.nestedPackage = nestedPackage;
+        this.nestedName = nestedName;
+        this.nestedAccessor = nestedAccessor;
+        this.elementAccessor = elementAccessor;
+        this.readChecked = readChecked;
+        this.writeChecked = writeChecked;
+    }
+
+    public boolean isWritable() {
+        return write != null;
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + type;
+    }
+}
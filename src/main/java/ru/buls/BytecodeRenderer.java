@@ -0,0 +1,137 @@
+package ru.buls;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.buls.ClassFileWriter.*;
+
+/**
+ * Renders the metadata classes of a {@link BeanModel} as class files with the members
+ * {@link MetadataRenderer} generates by default, so no source of them is compiled.
+ * The lazyPaths, cacheChildren and accessors variants are rendered as sources only.
+ */
+public class BytecodeRenderer {
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String STRING_ARRAY = "[Ljava/lang/String;";
+
+    /**
+     * destination of the class files
+     */
+    public interface Output {
+        OutputStream open(String qualifiedName) throws IOException;
+    }
+
+    public void render(BeanModel bean, Output output) throws IOException {
+        for (BeanModel.MetadataClass metadataClass : bean.classes) {
+            byte[] bytes = render(bean, metadataClass);
+            OutputStream out = output.open(metadataClass.qualifiedName);
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    protected byte[] render(BeanModel bean, BeanModel.MetadataClass metadataClass) {
+        boolean isStatic = metadataClass.isStatic;
+        boolean isInterface = metadataClass.isInterface;
+        String className = internalName(bean, metadataClass, metadataClass.name);
+        String node = internalName(bean, metadataClass, MetadataRenderer.OBJECT_CLASS_NAME);
+        String nodeDescriptor = "L" + node + ";";
+        String staticClass = internalName(bean, metadataClass, bean.staticClassName);
+
+        List<String> interfaces = new ArrayList<String>();
+        //the superinterface of an interface is in the extends clause
+        if (isInterface && metadataClass.extendsName != null)
+            interfaces.add(internalName(bean, metadataClass, metadataClass.extendsName));
+        for (String name : metadataClass.implementsList) interfaces.add(internalName(bean, metadataClass, name));
+        String superName = isInterface || metadataClass.extendsName == null ? "java/lang/Object"
+                : internalName(bean, metadataClass, metadataClass.extendsName);
+
+        ClassFileWriter cw = new ClassFileWriter(isInterface ? ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT
+                : ACC_PUBLIC | ACC_SUPER, className, superName, interfaces);
+
+        List<String> pathFields = new ArrayList<String>();
+        List<String> segmentFields = new ArrayList<String>();
+        for (BeanModel.Property property : bean.properties) {
+            String name = property.name;
+            if (property.isNested() || property.isIndexed()) {
+                String returnType = "L" + internalName(bean, metadataClass, property.returnType) + ";";
+                String nodeType = internalName(bean, metadataClass, property.nodeType);
+                String parameter = !property.isIndexed() ? "" : "int".equals(property.indexType) ? "I" : STRING;
+                String descriptor = "(" + parameter + ")" + returnType;
+                if (isInterface) cw.abstractMethod(ACC_PUBLIC, name, descriptor);
+                else {
+                    ClassFileWriter.Code code = cw.method(isStatic ? ACC_PUBLIC | ACC_STATIC : ACC_PUBLIC, name, descriptor)
+                            .newObject(nodeType).dup();
+                    int index = isStatic ? 0 : 1;
+                    if (!property.isIndexed()) code.ldc(name);
+                    else if (parameter.equals("I")) {
+                        String segments = "_" + name + MetadataRenderer.SEGMENTS;
+                        if (isStatic) segmentFields.add(segments);
+                        code.getstatic(staticClass, segments, STRING_ARRAY).ldc(name).iload(index)
+                                .invokestatic(className, MetadataRenderer.INDEXED_METHOD,
+                                        "(" + STRING_ARRAY + STRING + "I)" + STRING);
+                    } else {
+                        code.ldc(name).aload(index)
+                                .invokestatic(className, MetadataRenderer.MAPPED_METHOD,
+                                        "(" + STRING + STRING + ")" + STRING);
+                    }
+                    if (isStatic) code.aconstNull();
+                    else code.aload(0);
+                    code.invokespecial(nodeType, "<init>", "(" + STRING + nodeDescriptor + ")V").areturn().end();
+                }
+            }
+            if (isInterface) continue;
+            if (isStatic) cw.field(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, name, STRING, name);
+            else {
+                cw.field(ACC_PUBLIC | ACC_FINAL, name, STRING, null);
+                pathFields.add(name);
+            }
+        }
+        if (isInterface) return cw.toByteArray();
+
+        if (isStatic) {
+            for (String constant : bean.pathConstants.keySet())
+                cw.field(ACC_PUBLIC | ACC_STATIC | ACC_FINAL, constant, STRING, bean.pathConstants.get(constant));
+            for (String segments : segmentFields) cw.field(ACC_STATIC | ACC_FINAL, segments, STRING_ARRAY, null);
+            cw.method(ACC_PUBLIC, "<init>", "()V")
+                    .aload(0).invokespecial(superName, "<init>", "()V").returnVoid().end();
+            if (!segmentFields.isEmpty()) {
+                ClassFileWriter.Code clinit = cw.method(ACC_STATIC, "<clinit>", "()V");
+                for (String segments : segmentFields)
+                    clinit.intConst(MetadataRenderer.CACHED_SEGMENTS).anewarray("java/lang/String")
+                            .putstatic(className, segments, STRING_ARRAY);
+                clinit.returnVoid().end();
+            }
+        } else {
+            //the property paths are initialized after the super constructor, as the field initializers are
+            ClassFileWriter.Code code = cw.method(ACC_PUBLIC, "<init>", "(" + STRING + nodeDescriptor + ")V")
+                    .aload(0).aload(1).aload(2).invokespecial(superName, "<init>", "(" + STRING + nodeDescriptor + ")V");
+            initPaths(code, className, pathFields).returnVoid().end();
+            code = cw.method(ACC_PROTECTED, "<init>", "()V").aload(0).invokespecial(superName, "<init>", "()V");
+            initPaths(code, className, pathFields).returnVoid().end();
+        }
+        return cw.toByteArray();
+    }
+
+    private static ClassFileWriter.Code initPaths(ClassFileWriter.Code code, String className, List<String> fields) {
+        for (String field : fields)
+            code.aload(0).aload(0).ldc(field)
+                    .invokevirtual(className, MetadataRenderer.WRAP_METHOD, "(" + STRING + ")" + STRING)
+                    .putfield(className, field, STRING);
+        return code;
+    }
+
+    /**
+     * internal name of a class referred by the simple name in the source of the metadata class
+     */
+    private static String internalName(BeanModel bean, BeanModel.MetadataClass metadataClass, String simpleName) {
+        for (String imp : metadataClass.imports)
+            if (imp.endsWith("." + simpleName)) return imp.replace('.', '/');
+        return (bean.packageName + "." + simpleName).replace('.', '/');
+    }
+}
@@ -0,0 +1,315 @@
+package ru.buls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal writer of Java 5 (49.0) class files, enough for the metadata classes:
+ * fields with constant values, constructors and methods of straight-line code.
+ * The version needs no stack map frames. The class names are internal, e.g. {@code java/lang/String}.
+ */
+public class ClassFileWriter {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PROTECTED = 0x0004;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+    public static final int ACC_INTERFACE = 0x0200;
+    public static final int ACC_ABSTRACT = 0x0400;
+
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> constants = new HashMap<String, Integer>();
+    private int poolSize = 1;
+
+    private final int access;
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<byte[]> fields = new ArrayList<byte[]>();
+    private final List<byte[]> methods = new ArrayList<byte[]>();
+
+    public ClassFileWriter(int access, String name, String superName, List<String> interfaces) {
+        this.access = access;
+        this.thisClass = classRef(name);
+        this.superClass = classRef(superName);
+        this.interfaces = new int[interfaces.size()];
+        for (int i = 0; i < interfaces.size(); i++) this.interfaces[i] = classRef(interfaces.get(i));
+    }
+
+    /**
+     * adds a field, a not null constant value is written as the ConstantValue attribute of a static final String
+     */
+    public void field(int access, String name, String descriptor, String constantValue) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            if (constantValue == null) out.writeShort(0);
+            else {
+                out.writeShort(1);
+                out.writeShort(utf8("ConstantValue"));
+                out.writeInt(2);
+                out.writeShort(string(constantValue));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    public void abstractMethod(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access | ACC_ABSTRACT);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * starts a method body, it is added to the class by {@link Code#end()}
+     */
+    public Code method(int access, String name, String descriptor) {
+        int locals = (access & ACC_STATIC) != 0 ? 0 : 1;
+        return new Code(access, name, descriptor, locals + argumentsSize(descriptor));
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int i : interfaces) out.writeShort(i);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) out.write(field);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) out.write(method);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * bytecode of a method, the operand stack depth is tracked by the instructions
+     */
+    public class Code {
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final int maxLocals;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private int stack;
+        private int maxStack;
+
+        private Code(int access, String name, String descriptor, int maxLocals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = maxLocals;
+        }
+
+        public Code aload(int local) {
+            return local < 4 ? op(0x2a + local, 1) : op(0x19, 1).u1(local);
+        }
+
+        public Code iload(int local) {
+            return local < 4 ? op(0x1a + local, 1) : op(0x15, 1).u1(local);
+        }
+
+        public Code aconstNull() {
+            return op(0x01, 1);
+        }
+
+        public Code intConst(int value) {
+            if (value >= -1 && value <= 5) return op(0x03 + value, 1);
+            if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) return op(0x10, 1).u1(value);
+            return op(0x11, 1).u2(value);
+        }
+
+        public Code ldc(String value) {
+            int index = string(value);
+            return index < 256 ? op(0x12, 1).u1(index) : op(0x13, 1).u2(index);
+        }
+
+        public Code dup() {
+            return op(0x59, 1);
+        }
+
+        public Code newObject(String className) {
+            return op(0xbb, 1).u2(classRef(className));
+        }
+
+        public Code anewarray(String className) {
+            return op(0xbd, 0).u2(classRef(className));
+        }
+
+        public Code getstatic(String owner, String name, String descriptor) {
+            return op(0xb2, 1).u2(member(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        public Code putstatic(String owner, String name, String descriptor) {
+            return op(0xb3, -1).u2(member(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        public Code putfield(String owner, String name, String descriptor) {
+            return op(0xb5, -2).u2(member(CONSTANT_FIELDREF, owner, name, descriptor));
+        }
+
+        public Code invokespecial(String owner, String name, String descriptor) {
+            return invoke(0xb7, owner, name, descriptor, true);
+        }
+
+        public Code invokevirtual(String owner, String name, String descriptor) {
+            return invoke(0xb6, owner, name, descriptor, true);
+        }
+
+        public Code invokestatic(String owner, String name, String descriptor) {
+            return invoke(0xb8, owner, name, descriptor, false);
+        }
+
+        public Code areturn() {
+            return op(0xb0, -1);
+        }
+
+        public Code returnVoid() {
+            return op(0xb1, 0);
+        }
+
+        /**
+         * adds the method to the class
+         */
+        public void end() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + code.size());
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(code.size());
+                code.writeTo(out);
+                out.writeShort(0);
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            methods.add(bytes.toByteArray());
+        }
+
+        private Code invoke(int opcode, String owner, String name, String descriptor, boolean instance) {
+            int delta = returnSize(descriptor) - argumentsSize(descriptor) - (instance ? 1 : 0);
+            return op(opcode, delta).u2(member(CONSTANT_METHODREF, owner, name, descriptor));
+        }
+
+        private Code op(int opcode, int stackDelta) {
+            code.write(opcode);
+            stack += stackDelta;
+            if (stack > maxStack) maxStack = stack;
+            return this;
+        }
+
+        private Code u1(int value) {
+            code.write(value);
+            return this;
+        }
+
+        private Code u2(int value) {
+            code.write(value >>> 8);
+            code.write(value);
+            return this;
+        }
+    }
+
+    private static int argumentsSize(String descriptor) {
+        int size = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            size += c == 'J' || c == 'D' ? 2 : 1;
+            while (descriptor.charAt(i) == '[') i++;
+            if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            i++;
+        }
+        return size;
+    }
+
+    private static int returnSize(String descriptor) {
+        char c = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return c == 'V' ? 0 : c == 'J' || c == 'D' ? 2 : 1;
+    }
+
+    private int utf8(String value) {
+        return constant("U" + value, CONSTANT_UTF8, value, 0, 0);
+    }
+
+    private int classRef(String name) {
+        return constant("C" + name, CONSTANT_CLASS, null, utf8(name), -1);
+    }
+
+    private int string(String value) {
+        return constant("S" + value, CONSTANT_STRING, null, utf8(value), -1);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int nameAndType = constant("N" + name + ":" + descriptor, CONSTANT_NAME_AND_TYPE, null,
+                utf8(name), utf8(descriptor));
+        return constant(tag + owner + "." + name + ":" + descriptor, tag, null, classRef(owner), nameAndType);
+    }
+
+    /**
+     * adds a pool entry once, the second index is -1 for the single index entries
+     */
+    private int constant(String key, int tag, String utf8, int first, int second) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        try {
+            pool.writeByte(tag);
+            if (utf8 != null) pool.writeUTF(utf8);
+            else {
+                pool.writeShort(first);
+                if (second >= 0) pool.writeShort(second);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        constants.put(key, poolSize);
+        return poolSize++;
+    }
+}
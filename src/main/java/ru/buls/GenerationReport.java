@@ -0,0 +1,109 @@
+package ru.buls;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings and counters of the processor rounds, written as JSON by the report option.
+ * Used by the processor thread only.
+ */
+public class GenerationReport {
+    private final List<Round> rounds = new ArrayList<Round>();
+
+    /**
+     * statistics of one processing round, the times are in nanoseconds
+     */
+    public static class Round {
+        public final int number;
+        /**
+         * root classes and interfaces checked for generation
+         */
+        public int scanned;
+        /**
+         * classes out of the include list
+         */
+        public int filtered;
+        /**
+         * included classes skipped by the exclude list
+         */
+        public int excluded;
+        /**
+         * generated types including the base ones
+         */
+        public int generated;
+        /**
+         * characters of the generated sources
+         */
+        public long written;
+        /**
+         * bytes of the generated class files
+         */
+        public long writtenBytes;
+        public long propertiesTime;
+        public long includeTime;
+        public long modelTime;
+        public long emitTime;
+        public long roundTime;
+
+        public Round(int number) {
+            this.number = number;
+        }
+    }
+
+    public Round startRound() {
+        Round round = new Round(rounds.size() + 1);
+        rounds.add(round);
+        return round;
+    }
+
+    public List<Round> getRounds() {
+        return rounds;
+    }
+
+    public void write(Writer out) throws IOException {
+        out.write("{\n  \"rounds\": [");
+        Round total = new Round(0);
+        for (int i = 0; i < rounds.size(); i++) {
+            Round round = rounds.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            write(out, round, "    ");
+            total.scanned += round.scanned;
+            total.filtered += round.filtered;
+            total.excluded += round.excluded;
+            total.generated += round.generated;
+            total.written += round.written;
+            total.writtenBytes += round.writtenBytes;
+            total.propertiesTime += round.propertiesTime;
+            total.includeTime += round.includeTime;
+            total.modelTime += round.modelTime;
+            total.emitTime += round.emitTime;
+            total.roundTime += round.roundTime;
+        }
+        out.write("\n  ],\n  \"total\":\n");
+        write(out, total, "  ");
+        out.write("\n}\n");
+    }
+
+    private static void write(Writer out, Round round, String indent) throws IOException {
+        out.write(indent + "{");
+        if (round.number > 0) out.write("\"round\": " + round.number + ", ");
+        out.write("\"scanned\": " + round.scanned
+                + ", \"filtered\": " + round.filtered
+                + ", \"excluded\": " + round.excluded
+                + ", \"generated\": " + round.generated
+                + ", \"writtenChars\": " + round.written
+                + ", \"writtenBytes\": " + round.writtenBytes
+                + ", \"propertiesMs\": " + millis(round.propertiesTime)
+                + ", \"includeMs\": " + millis(round.includeTime)
+                + ", \"modelMs\": " + millis(round.modelTime)
+                + ", \"emitMs\": " + millis(round.emitTime)
+                + ", \"roundMs\": " + millis(round.roundTime) + "}");
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+}
@@ -0,0 +1,150 @@
+package ru.buls;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.FileObject;
+import java.io.*;
+import java.util.*;
+
+import static javax.tools.StandardLocation.CLASS_OUTPUT;
+import static javax.tools.StandardLocation.CLASS_PATH;
+
+/**
+ * Index of the beans having generated metadata, written per package to {@code META-INF/bean-metadata/<package>.index}.
+ * The indexes of the upstream modules are read from the class path, so the nested navigation of the beans
+ * links to the metadata classes generated there. Every line is a bean simple name and the names of its
+ * P*, IP*, S* and accessor classes, {@code -} if there is no accessor.
+ * Used by the processor thread only.
+ */
+public class MetadataIndex {
+    public static final String DIRECTORY = "META-INF/bean-metadata/";
+    public static final String SUFFIX = ".index";
+    private static final String NO_CLASS = "-";
+
+    private final Filer filer;
+    /**
+     * upstream entries by the package and the bean simple name, empty for packages without index
+     */
+    private final Map<String, Map<String, Entry>> upstream = new HashMap<String, Map<String, Entry>>();
+    private final Map<String, List<Entry>> generated = new TreeMap<String, List<Entry>>();
+
+    /**
+     * metadata class names of a bean
+     */
+    public static class Entry {
+        public final String bean;
+        public final String nodeName;
+        public final String interfaceName;
+        public final String staticName;
+        /**
+         * null if the accessor is not generated
+         */
+        public final String accessorName;
+
+        public Entry(String bean, String nodeName, String interfaceName, String staticName, String accessorName) {
+            this.bean = bean;
+            this.nodeName = nodeName;
+            this.interfaceName = interfaceName;
+            this.staticName = staticName;
+            this.accessorName = accessorName;
+        }
+
+        public String metadataName(boolean isStatic, boolean isInterface) {
+            return isStatic ? staticName : isInterface ? interfaceName : nodeName;
+        }
+
+        @Override
+        public String toString() {
+            return bean + " " + nodeName + " " + interfaceName + " " + staticName + " "
+                    + (accessorName != null ? accessorName : NO_CLASS);
+        }
+    }
+
+    public MetadataIndex(Filer filer) {
+        this.filer = filer;
+    }
+
+    /**
+     * the bean metadata generated by an upstream module, null if the type is not indexed
+     */
+    public Entry upstream(TypeElement type) {
+        Element enclosing = type.getEnclosingElement();
+        if (!(enclosing instanceof PackageElement)) return null;
+        String packageName = ((PackageElement) enclosing).getQualifiedName().toString();
+        Map<String, Entry> entries = upstream.get(packageName);
+        if (entries == null) upstream.put(packageName, entries = read(packageName));
+        return entries.get(type.getSimpleName().toString());
+    }
+
+    /**
+     * the beans of the round extended by the upstream indexed ones, only the round elements are iterated
+     */
+    public Set<Element> withUpstream(final Set<? extends Element> elements) {
+        return new AbstractSet<Element>() {
+            @Override
+            public boolean contains(Object o) {
+                return elements.contains(o) || (o instanceof TypeElement && upstream((TypeElement) o) != null);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Iterator<Element> iterator() {
+                return (Iterator<Element>) elements.iterator();
+            }
+
+            @Override
+            public int size() {
+                return elements.size();
+            }
+        };
+    }
+
+    public void add(String packageName, Entry entry) {
+        List<Entry> entries = generated.get(packageName);
+        if (entries == null) generated.put(packageName, entries = new ArrayList<Entry>());
+        entries.add(entry);
+    }
+
+    /**
+     * writes the indexes of the generated beans to the class output
+     */
+    public void write() throws IOException {
+        for (String packageName : generated.keySet()) {
+            FileObject file = filer.createResource(CLASS_OUTPUT, "", DIRECTORY + packageName + SUFFIX);
+            Writer writer = new OutputStreamWriter(file.openOutputStream(), "UTF-8");
+            try {
+                for (Entry entry : generated.get(packageName)) writer.write(entry + "\n");
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    private Map<String, Entry> read(String packageName) {
+        Map<String, Entry> result = new HashMap<String, Entry>();
+        BufferedReader reader = null;
+        try {
+            FileObject file = filer.getResource(CLASS_PATH, "", DIRECTORY + packageName + SUFFIX);
+            reader = new BufferedReader(new InputStreamReader(file.openInputStream(), "UTF-8"));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                String[] names = line.trim().split("\\s+");
+                if (names.length < 5) continue;
+                result.put(names[0], new Entry(names[0], names[1], names[2], names[3],
+                        NO_CLASS.equals(names[4]) ? null : names[4]));
+            }
+        } catch (IOException e) {
+            //no index of the package
+        } catch (IllegalArgumentException e) {
+            //the class path location is not supported
+        } finally {
+            if (reader != null) try {
+                reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,730 @@
+package ru.buls;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Renders the metadata sources of a {@link BeanModel}.
+ * Uses the model strings only, so it can be called by any thread.
+ */
+public class MetadataRenderer {
+    public static final String JAVA_LANG = "javax.metadata";
+    public static final String OBJECT_CLASS_NAME = BeanMetadataGenerator.PREFIX + Object.class.getSimpleName();
+    public static final String ACCESSOR = "Accessor";
+    public static final String GETTER = "Getter";
+    public static final String PATH_REGISTRY = "PathRegistry";
+    public static final String TRACKED = "Tracked";
+    static final String PATH_ID = "pathId";
+    static final String ACCESSOR_METHOD = "accessor";
+    static final String NESTED_METHOD = "nested";
+    static final String PARSE_METHOD = "parse";
+    static final String MATCHES_METHOD = "matches";
+    static final String CLOSING_METHOD = "closing";
+    static final String INDEX_METHOD = "index";
+    static final String INDEXED_METHOD = "indexed";
+    static final String MAPPED_METHOD = "mapped";
+    static final String SEGMENTS = "Segments";
+    static final int CACHED_SEGMENTS = 64;
+    static final String WRAP_METHOD = "w";
+    static final String FULL_PATH = "fullPath";
+    /**
+     * no argument methods of the metadata nodes, lazy property paths with these names are generated as fields
+     */
+    private static final Set<String> NODE_METHODS = new HashSet<String>(asList("length", "toString", "hashCode",
+            FULL_PATH, PATH_ID, "getClass", "clone", "finalize", "notify", "notifyAll", "wait"));
+
+    private static final Set<String> PRIMITIVES = new HashSet<String>(asList("boolean", "byte", "short", "char",
+            "int", "long"));
+
+    private final boolean lazyPaths;
+    private final boolean cacheChildren;
+    private final boolean parsers;
+
+    public MetadataRenderer(boolean lazyPaths, boolean cacheChildren, boolean parsers) {
+        this.lazyPaths = lazyPaths;
+        this.cacheChildren = cacheChildren;
+        this.parsers = parsers;
+    }
+
+    /**
+     * destination of the rendered sources
+     */
+    public interface Output {
+        Writer open(String qualifiedName) throws IOException;
+    }
+
+    /**
+     * renders all the metadata classes of the bean, every class is streamed to its own output writer
+     */
+    public void render(BeanModel bean, Output output, SourceWriter out) throws IOException {
+        for (BeanModel.MetadataClass metadataClass : bean.classes) {
+            out.open(output.open(metadataClass.qualifiedName));
+            render(bean, metadataClass, out);
+            out.close();
+        }
+        if (bean.accessorName != null) {
+            out.open(output.open(bean.packageName + "." + bean.accessorName));
+            renderAccessor(bean, out);
+            out.close();
+        }
+        if (bean.dirtyName != null) {
+            out.open(output.open(bean.packageName + "." + bean.dirtyName));
+            renderDirty(bean, out);
+            out.close();
+        }
+    }
+
+    protected void render(BeanModel bean, BeanModel.MetadataClass metadataClass, SourceWriter out) throws IOException {
+        boolean isStatic = metadataClass.isStatic;
+        boolean isInterface = metadataClass.isInterface;
+        String metadataClassName = metadataClass.name;
+
+        out.append("package ").append(bean.packageName).append(";");
+        out.newLine();
+
+        List<String> imports = metadataClass.imports;
+        if (!imports.isEmpty()) out.newLine();
+        for (String imp : imports) {
+            out.append("import ").append(imp).append(";");
+            out.newLine();
+        }
+        if (!imports.isEmpty()) out.newLine();
+
+        out.newLine();
+
+        out.append("public ").append(isInterface ? "interface" : "class").append(" ").append(metadataClassName);
+        if (metadataClass.extendsName != null) out.append(" extends ").append(metadataClass.extendsName);
+
+        boolean first = !metadataClass.implementsListStarted;
+        for (String name : metadataClass.implementsList) {
+            if (first) out.append("\n").indent(2).append(isInterface ? "extends " : "implements ");
+            else out.append(",\n").indent(2);
+            out.append(name);
+            first = false;
+        }
+        out.append(" {");
+        out.newLine();
+
+        if (!(isStatic || isInterface)) {
+            out.indent().append("public ").append(metadataClassName)
+                    .append("(String prefix, ").append(OBJECT_CLASS_NAME).append(" parent) { super(prefix, parent); }");
+            out.newLine();
+            out.indent().append("protected ").append(metadataClassName).append("() { super(); }");
+            out.newLine();
+            if (bean.accessorName != null) {
+                out.indent().append("public ").append(ACCESSOR).append("<?> ").append(ACCESSOR_METHOD)
+                        .append("() { return ").append(bean.accessorName).append(".INSTANCE; }");
+                out.newLine();
+            }
+        }
+
+        if (isStatic && bean.rootName != null) {
+            //the navigation nodes are children of a bean root, so the getter chains know the accessor of the bean;
+            //the root is the parent of the top level properties, e.g. new PObject(SPerson.name, SPerson.ROOT)
+            out.indent().append("public static final ").append(bean.rootName).append(" ROOT = new ")
+                    .append(bean.rootName).append("();");
+            out.newLine();
+        }
+
+        out.newLine();
+        for (BeanModel.Property property : bean.properties) {
+            String name = property.name;
+            if (property.isNested()) {
+                String newObjType = property.nodeType;
+                String returnObjType = property.returnType;
+                out.indent();
+                if (isInterface) {
+                    out.append(returnObjType).append(" ").append(name).append("();");
+                } else if (cacheChildren) {
+                    //racy single-check: metadata nodes are immutable, so the read path needs no locking
+                    out.append("private ");
+                    if (isStatic) out.append("static ");
+                    out.append(newObjType).append(" _").append(name).append(";");
+                    out.newLine();
+                    out.indent().append("public ");
+                    if (isStatic) out.append("static ");
+                    out.append(returnObjType).append(" ").append(name).append("() { ")
+                            .append(newObjType).append(" c = _").append(name)
+                            .append("; if (c == null) _").append(name).append(" = c = ");
+                    newObjectCode(out, newObjType, name, isStatic, bean);
+                    out.append(" return c; }");
+                } else {
+                    out.append("public ");
+                    if (isStatic) out.append("static ");
+                    out.append(returnObjType).append(" ").append(name).append("() { return ");
+                    newObjectCode(out, newObjType, name, isStatic, bean);
+                    out.append(" }");
+                }
+                out.newLine();
+            }
+            if (property.isIndexed()) indexedMethod(out, property, isStatic, isInterface, bean);
+            if (!isInterface && lazyPaths && !isStatic && !NODE_METHODS.contains(name)
+                    && !(bean.accessorName != null && ACCESSOR_METHOD.equals(name))) {
+                //nested properties are reachable by the fullPath() of their navigation method result
+                if (!property.isNested()) {
+                    out.indent().append("private String _").append(name).append(";");
+                    out.newLine();
+                    out.indent().append("public String ").append(name).append("() { String p = _")
+                            .append(name).append("; if (p == null) _").append(name).append(" = p = ")
+                            .append(WRAP_METHOD).append("(");
+                    statField(out, bean.staticClassName, name);
+                    out.append("); return p; }");
+                    out.newLine();
+                }
+            } else if (!isInterface) {
+                out.indent().append("public final ");
+                if (isStatic) out.append("static ");
+                out.append("String ").append(name).append(" = ");
+                if (isStatic) out.append("\"").append(name).append("\"");
+                else {
+                    out.append(WRAP_METHOD).append("(");
+                    statField(out, bean.staticClassName, name);
+                    out.append(")");
+                }
+                out.append(";");
+                out.newLine();
+            }
+        }
+
+        if (parsers && !isInterface) {
+            if (!isStatic) renderParser(bean, metadataClass, out);
+            else renderParseMethod(bean, out);
+        }
+
+        if (isStatic && !isInterface)
+            for (String constant : bean.pathConstants.keySet()) {
+                out.indent().append("public final static String ").append(constant)
+                        .append(" = \"").append(bean.pathConstants.get(constant)).append("\";");
+                out.newLine();
+            }
+
+        out.newLine();
+        out.append("}");
+    }
+
+    /**
+     * navigation to an element of a list, an array or a map, e.g. orders(3) is the node of orders[3] path.
+     * The segments of the small indexes are cached by the S* class, so no string is built for them
+     */
+    private static void indexedMethod(SourceWriter out, BeanModel.Property property, boolean isStatic,
+                                      boolean isInterface, BeanModel bean) throws IOException {
+        String name = property.name;
+        boolean mapped = !"int".equals(property.indexType);
+        String param = mapped ? "key" : "index";
+        if (isInterface) {
+            out.indent().append(property.returnType).append(" ").append(name).append("(")
+                    .append(property.indexType).append(" ").append(param).append(");");
+            out.newLine();
+            return;
+        }
+        if (isStatic && !mapped) {
+            out.indent().append("static final String[] _").append(name).append(SEGMENTS).append(" = new String[")
+                    .append(CACHED_SEGMENTS).append("];");
+            out.newLine();
+        }
+        out.indent().append("public ");
+        if (isStatic) out.append("static ");
+        out.append(property.returnType).append(" ").append(name).append("(").append(property.indexType).append(" ")
+                .append(param).append(") { return new ").append(property.nodeType).append("(");
+        if (mapped) out.append(MAPPED_METHOD).append("(");
+        else {
+            out.append(INDEXED_METHOD).append("(").append(bean.staticClassName).append("._").append(name)
+                    .append(SEGMENTS).append(", ");
+        }
+        statField(out, bean.staticClassName, name);
+        out.append(", ").append(param).append("), ")
+                .append(!isStatic ? "this" : bean.rootName != null ? "ROOT" : "null").append("); }");
+        out.newLine();
+    }
+
+    /**
+     * the entry point of the S* class, null if the path is not a property path of the bean
+     */
+    private static void renderParseMethod(BeanModel bean, SourceWriter out) throws IOException {
+        String nodeClassName = null;
+        for (BeanModel.MetadataClass metadataClass : bean.classes)
+            if (!metadataClass.isStatic && !metadataClass.isInterface) nodeClassName = metadataClass.name;
+        if (nodeClassName == null) return;
+        out.newLine();
+        out.indent().append("public static ").append(OBJECT_CLASS_NAME).append(" ").append(PARSE_METHOD)
+                .append("(CharSequence path) { return ").append(nodeClassName).append(".").append(PARSE_METHOD)
+                .append("(path, 0, ").append(bean.rootName != null ? "ROOT" : "null").append("); }");
+        out.newLine();
+    }
+
+    /**
+     * renders the parser of the property paths starting at {@code from}: a switch per branching character
+     * of the property names and an in-place comparison of the unbranched runs, so every character is read once
+     * and no segment string is cut out. The paths of the superclass properties are parsed by the superclass node
+     */
+    private static void renderParser(BeanModel bean, BeanModel.MetadataClass metadataClass, SourceWriter out) throws IOException {
+        String miss = metadataClass.extendsName == null || OBJECT_CLASS_NAME.equals(metadataClass.extendsName) ? "null"
+                : metadataClass.extendsName + "." + PARSE_METHOD + "(path, from, parent)";
+        Trie root = new Trie();
+        for (BeanModel.Property property : bean.properties) root.add(property.name, property);
+        out.newLine();
+        out.indent().append("public static ").append(OBJECT_CLASS_NAME).append(" ").append(PARSE_METHOD)
+                .append("(CharSequence path, int from, ").append(OBJECT_CLASS_NAME).append(" parent) {\n");
+        if (root.children.isEmpty()) out.indent(2).append("return ").append(miss).append(";\n");
+        else {
+            out.indent(2).append("int length = path.length();\n")
+                    .indent(2).append("int i = from;\n");
+            renderTrie(root, 2, bean, miss, out);
+        }
+        out.indent().append("}");
+        out.newLine();
+    }
+
+    private static void renderTrie(Trie node, int depth, BeanModel bean, String miss, SourceWriter out) throws IOException {
+        StringBuilder run = new StringBuilder();
+        while (node.property == null && node.children.size() == 1) {
+            Map.Entry<Character, Trie> child = node.children.entrySet().iterator().next();
+            run.append(child.getKey());
+            node = child.getValue();
+        }
+        if (run.length() > 0)
+            out.indent(depth).append("if (!").append(MATCHES_METHOD).append("(path, i, \"").append(run)
+                    .append("\")) return ").append(miss).append(";\n")
+                    .indent(depth).append("i += ").append(run.length()).append(";\n");
+        if (node.children.isEmpty()) {
+            renderMatch(node.property, depth, bean, miss, out);
+            return;
+        }
+        out.indent(depth).append("switch (i < length ? path.charAt(i) : -1) {\n");
+        for (Map.Entry<Character, Trie> child : node.children.entrySet()) {
+            out.indent(depth + 1).append("case ").append(charLiteral(child.getKey())).append(":\n")
+                    .indent(depth + 2).append("i++;\n");
+            renderTrie(child.getValue(), depth + 2, bean, miss, out);
+        }
+        out.indent(depth + 1).append("default:\n");
+        if (node.property != null) renderMatch(node.property, depth + 2, bean, miss, out);
+        else out.indent(depth + 2).append("return ").append(miss).append(";\n");
+        out.indent(depth).append("}\n");
+    }
+
+    /**
+     * the property name is matched at i, the path ends there or continues into the nested node
+     */
+    private static void renderMatch(BeanModel.Property property, int depth, BeanModel bean, String miss,
+                                    SourceWriter out) throws IOException {
+        String name = bean.staticClassName + "." + property.name;
+        if (!property.isNested() && !property.isIndexed()) {
+            out.indent(depth).append("return i == length ? new ").append(OBJECT_CLASS_NAME).append("(").append(name)
+                    .append(", parent) : ").append(miss).append(";\n");
+            return;
+        }
+        out.indent(depth).append("{\n");
+        int d = depth + 1;
+        String node = property.nodeType;
+        if (property.isNested())
+            out.indent(d).append(node).append(" node = new ").append(node).append("(").append(name).append(", parent);\n");
+        else {
+            boolean mapped = !"int".equals(property.indexType);
+            out.indent(d).append("if (i == length) return new ").append(OBJECT_CLASS_NAME).append("(").append(name)
+                    .append(", parent);\n")
+                    .indent(d).append("int end = ").append(CLOSING_METHOD).append("(path, i, ")
+                    .append(mapped ? "'(', ')'" : "'[', ']'").append(");\n");
+            if (mapped) {
+                out.indent(d).append("if (end < 0) return ").append(miss).append(";\n")
+                        .indent(d).append(node).append(" node = new ").append(node).append("(").append(MAPPED_METHOD)
+                        .append("(").append(name).append(", path.subSequence(i + 1, end).toString()), parent);\n");
+            } else {
+                out.indent(d).append("int index = end < 0 ? -1 : ").append(INDEX_METHOD).append("(path, i + 1, end);\n")
+                        .indent(d).append("if (index < 0) return ").append(miss).append(";\n")
+                        .indent(d).append(node).append(" node = new ").append(node).append("(").append(INDEXED_METHOD)
+                        .append("(").append(bean.staticClassName).append("._").append(property.name).append(SEGMENTS)
+                        .append(", ").append(name).append(", index), parent);\n");
+            }
+            out.indent(d).append("i = end + 1;\n");
+        }
+        out.indent(d).append("if (i == length) return node;\n")
+                .indent(d).append("return path.charAt(i) == '.' ? ").append(node).append(".").append(PARSE_METHOD)
+                .append("(path, i + 1, node) : ").append(miss).append(";\n")
+                .indent(depth).append("}\n");
+    }
+
+    private static String charLiteral(char c) {
+        return c < 128 ? "'" + c + "'" : String.format("'\\u%04x'", (int) c);
+    }
+
+    /**
+     * property names by their characters
+     */
+    private static class Trie {
+        final Map<Character, Trie> children = new TreeMap<Character, Trie>();
+        BeanModel.Property property;
+
+        void add(String name, BeanModel.Property property) {
+            Trie node = this;
+            for (int i = 0; i < name.length(); i++) {
+                Trie child = node.children.get(name.charAt(i));
+                if (child == null) node.children.put(name.charAt(i), child = new Trie());
+                node = child;
+            }
+            node.property = property;
+        }
+    }
+
+    private static void statField(SourceWriter out, String staticClassName, String property) throws IOException {
+        out.append(staticClassName).append(".").append(property);
+    }
+
+    private static void newObjectCode(SourceWriter out, String className, String property, boolean isStatic,
+                                      BeanModel bean) throws IOException {
+        out.append("new ").append(className).append("(");
+        if (isStatic) out.append(/*ссылка на свою же переменную*/ property);
+        else statField(out, bean.staticClassName, property);
+        out.append(", ").append(!isStatic ? "this" : bean.rootName != null ? "ROOT" : "null").append(");");
+    }
+
+    /**
+     * renders the class reading and writing the bean properties by direct calls,
+     * by the typed get/set methods or by the property ordinal
+     */
+    protected void renderAccessor(BeanModel bean, SourceWriter out) throws IOException {
+        String className = bean.simpleName;
+        String accessorName = bean.accessorName;
+        List<BeanProperty> properties = bean.beanProperties;
+
+        out.append("package ").append(bean.packageName).append(";");
+        out.newLine();
+        out.newLine();
+        out.append("import ").append(JAVA_LANG).append(".").append(ACCESSOR).append(";");
+        out.newLine();
+        out.newLine();
+        out.append("public class ").append(accessorName).append(" implements ").append(ACCESSOR)
+                .append("<").append(className).append("> {");
+        out.newLine();
+        out.indent().append("public static final ").append(accessorName).append(" INSTANCE = new ")
+                .append(accessorName).append("();");
+        out.newLine();
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++) {
+            String constant = bean.ordinalConstants.get(ordinal);
+            if (constant != null) {
+                out.indent().append("public static final int ").append(constant).append(" = ")
+                        .append(ordinal).append(";");
+                out.newLine();
+            }
+        }
+        out.newLine();
+        out.indent().append("private static final String[] NAMES = {");
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++) {
+            if (ordinal > 0) out.append(", ");
+            out.append("\"").append(properties.get(ordinal).name).append("\"");
+        }
+        out.append("};");
+        out.newLine();
+        out.newLine();
+        out.indent().append("protected ").append(accessorName).append("() { }");
+        out.newLine();
+        out.newLine();
+
+        for (BeanProperty property : properties) {
+            String cap = BeanMetadataGenerator.capitalize(property.name);
+            out.indent().append("public ").append(property.type).append(" get").append(cap)
+                    .append("(").append(className).append(" bean) {");
+            if (property.readChecked) {
+                out.append("\n").indent(2).append("try { return bean.").append(property.read).append("; }");
+                rethrowUnchecked(out);
+                out.append("\n").indent();
+            } else out.append(" return bean.").append(property.read).append("; ");
+            out.append("}");
+            out.newLine();
+            if (property.isWritable()) {
+                out.indent().append("public void set").append(cap).append("(").append(className)
+                        .append(" bean, ").append(property.type).append(" value) {");
+                if (property.writeChecked) {
+                    out.append("\n").indent(2).append("try { ");
+                    writeCode(out, property, "value");
+                    out.append(" }");
+                    rethrowUnchecked(out);
+                    out.append("\n").indent();
+                } else {
+                    out.append(" ");
+                    writeCode(out, property, "value");
+                    out.append(" ");
+                }
+                out.append("}");
+                out.newLine();
+            }
+        }
+        out.newLine();
+
+        out.indent().append("public int size() { return NAMES.length; }");
+        out.newLine();
+        out.indent().append("public String name(int ordinal) { return NAMES[ordinal]; }");
+        out.newLine();
+        out.indent().append("public int ordinal(String name) {\n")
+                .indent(2).append("for (int i = 0; i < NAMES.length; i++) if (NAMES[i].equals(name)) return i;\n")
+                .indent(2).append("return -1;\n")
+                .indent().append("}");
+        out.newLine();
+
+        out.indent().append("public boolean isWritable(int ordinal) {\n")
+                .indent(2).append("switch (ordinal) {\n");
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++)
+            if (properties.get(ordinal).isWritable())
+                out.indent(3).append("case ").append(ordinal)
+                        .append(": return true;\n");
+        out.indent(3).append("default: return false;\n")
+                .indent(2).append("}\n")
+                .indent().append("}");
+        out.newLine();
+
+        out.indent().append("public Object get(").append(className).append(" bean, int ordinal) {\n")
+                .indent(2).append("switch (ordinal) {\n");
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++)
+            out.indent(3).append("case ").append(ordinal)
+                    .append(": return ").append(read(properties.get(ordinal), "bean")).append(";\n");
+        out.indent(3)
+                .append("default: throw new IndexOutOfBoundsException(\"ordinal \" + ordinal);\n")
+                .indent(2).append("}\n")
+                .indent().append("}");
+        out.newLine();
+
+        //the values are cast to the parameterized property types
+        out.indent().append("@SuppressWarnings(\"unchecked\")\n")
+                .indent().append("public void set(").append(className).append(" bean, int ordinal, Object value) {\n")
+                .indent(2).append("switch (ordinal) {\n");
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++) {
+            BeanProperty property = properties.get(ordinal);
+            if (property.isWritable()) {
+                out.indent(3).append("case ").append(ordinal).append(": ");
+                write(out, property, "(" + property.boxedType + ") value");
+                out.append(" return;\n");
+            }
+        }
+        out.indent(3)
+                .append("default: throw new UnsupportedOperationException(\"property \" + ordinal + \" is not writable\");\n")
+                .indent(2).append("}\n")
+                .indent().append("}");
+        out.newLine();
+
+        out.indent().append("public ").append(ACCESSOR).append("<?> ").append(NESTED_METHOD).append("(int ordinal) {\n")
+                .indent(2).append("switch (ordinal) {\n");
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++) {
+            //the indexed and mapped segments are followed by the properties of the elements
+            BeanProperty property = properties.get(ordinal);
+            String nested = property.nestedAccessor != null ? property.nestedAccessor : property.elementAccessor;
+            if (nested != null)
+                out.indent(3).append("case ").append(ordinal).append(": return ").append(nested).append(".INSTANCE;\n");
+        }
+        out.indent(3).append("default: return null;\n")
+                .indent(2).append("}\n")
+                .indent().append("}");
+        out.newLine();
+        out.newLine();
+        renderCopy(className, properties, out);
+        renderDiff(className, properties, out);
+        out.append("}");
+    }
+
+    /**
+     * renders the subclass of the bean marking the properties set by the setters in long words,
+     * one bit per property ordinal. A constructed bean is clean, the setters called by its constructor are not marked
+     */
+    protected void renderDirty(BeanModel bean, SourceWriter out) throws IOException {
+        String dirtyName = bean.dirtyName;
+        int words = (bean.beanProperties.size() + 63) / 64;
+
+        out.append("package ").append(bean.packageName).append(";");
+        out.newLine();
+        out.newLine();
+        out.append("import ").append(JAVA_LANG).append(".").append(TRACKED).append(";");
+        out.newLine();
+        out.newLine();
+        out.append("public class ").append(dirtyName).append(" extends ").append(bean.simpleName)
+                .append(" implements ").append(TRACKED).append(" {");
+        out.newLine();
+        for (int word = 0; word < words; word++) {
+            out.indent().append("private long _dirty").append(word).append(";");
+            out.newLine();
+        }
+        out.newLine();
+
+        for (BeanModel.Constructor constructor : bean.constructors) {
+            out.indent().append(constructor.access).append(dirtyName).append("(").append(constructor.parameters).append(")");
+            if (constructor.exceptions.length() > 0) out.append(" throws ").append(constructor.exceptions);
+            out.append(" {\n")
+                    .indent(2).append("super(").append(constructor.arguments).append(");\n")
+                    .indent(2).append("clearDirty();\n")
+                    .indent().append("}");
+            out.newLine();
+        }
+        out.newLine();
+
+        for (BeanModel.Setter setter : bean.trackedSetters) {
+            boolean isVoid = "void".equals(setter.returnType);
+            out.indent().append("@Override");
+            out.newLine();
+            out.indent().append("public ").append(setter.returnType).append(" ").append(setter.name).append("(")
+                    .append(setter.parameterType).append(" value)");
+            if (setter.exceptions.length() > 0) out.append(" throws ").append(setter.exceptions);
+            out.append(" {\n")
+                    .indent(2);
+            if (!isVoid) out.append(setter.returnType).append(" result = ");
+            out.append("super.").append(setter.name).append("(value);\n")
+                    .indent(2).append(dirtyBit(setter.ordinal)).append(";\n");
+            if (!isVoid) out.indent(2).append("return result;\n");
+            out.indent().append("}");
+            out.newLine();
+        }
+        out.newLine();
+
+        out.indent().append("public boolean isDirty() { return ");
+        if (words == 0) out.append("false");
+        for (int word = 0; word < words; word++) {
+            if (word > 0) out.append(" || ");
+            out.append("_dirty").append(word).append(" != 0");
+        }
+        out.append("; }");
+        out.newLine();
+        out.indent().append("public boolean isDirty(int ordinal) {\n")
+                .indent(2).append("switch (ordinal >>> 6) {\n");
+        for (int word = 0; word < words; word++)
+            out.indent(3).append("case ").append(word).append(": return (_dirty").append(word)
+                    .append(" & 1L << ordinal) != 0;\n");
+        out.indent(3).append("default: return false;\n")
+                .indent(2).append("}\n")
+                .indent().append("}");
+        out.newLine();
+        out.indent().append("public void clearDirty() {");
+        for (int word = 0; word < words; word++) out.append(" _dirty").append(word).append(" = 0;");
+        out.append(" }");
+        out.newLine();
+        out.indent().append("public java.util.List<String> dirtyPaths() {\n")
+                .indent(2).append("java.util.List<String> paths = new java.util.ArrayList<String>();\n");
+        for (BeanModel.Setter setter : bean.trackedSetters)
+            out.indent(2).append("if ((_dirty").append(setter.ordinal / 64).append(" & 1L << ").append(setter.ordinal % 64)
+                    .append(") != 0) paths.add(\"").append(setter.property).append("\");\n");
+        out.indent(2).append("return paths;\n")
+                .indent().append("}");
+        out.newLine();
+        out.append("}");
+    }
+
+    private static String dirtyBit(int ordinal) {
+        return "_dirty" + ordinal / 64 + " |= 1L << " + ordinal % 64;
+    }
+
+    /**
+     * shallow copy of the writable properties
+     */
+    private static void renderCopy(String className, List<BeanProperty> properties, SourceWriter out) throws IOException {
+        out.indent().append("public void copy(").append(className).append(" from, ").append(className)
+                .append(" bean) {");
+        out.newLine();
+        for (BeanProperty property : properties)
+            if (property.isWritable()) {
+                out.indent(2);
+                write(out, property, read(property, "from"));
+                out.newLine();
+            }
+        out.indent().append("}");
+        out.newLine();
+    }
+
+    /**
+     * paths of the changed properties, the nested beans having accessors are compared property by property,
+     * the visited pairs stop on the cycles of the bean graphs
+     */
+    private static void renderDiff(String className, List<BeanProperty> properties, SourceWriter out) throws IOException {
+        out.indent().append("public java.util.List<String> diff(").append(className).append(" a, ").append(className)
+                .append(" b) {\n")
+                .indent(2).append("java.util.List<String> changes = new java.util.ArrayList<String>();\n")
+                .indent(2).append("diff(a, b, \"\", changes, new java.util.IdentityHashMap<Object, java.util.Map<Object, Object>>());\n")
+                .indent(2).append("return changes;\n")
+                .indent().append("}");
+        out.newLine();
+        out.indent().append("public void diff(").append(className).append(" a, ").append(className)
+                .append(" b, String prefix, java.util.List<String> changes,\n")
+                .indent(3).append("java.util.Map<Object, java.util.Map<Object, Object>> visited) {\n")
+                .indent(2).append("if (a == b) return;\n")
+                .indent(2).append("java.util.Map<Object, Object> compared = visited.get(a);\n")
+                .indent(2).append("if (compared == null) visited.put(a, compared = new java.util.IdentityHashMap<Object, Object>(2));\n")
+                .indent(2).append("if (compared.put(b, b) != null) return;");
+        out.newLine();
+        for (int ordinal = 0; ordinal < properties.size(); ordinal++) {
+            BeanProperty property = properties.get(ordinal);
+            String x = read(property, "a");
+            String y = read(property, "b");
+            String type = property.type;
+            out.indent(2);
+            if (property.nestedAccessor != null) {
+                //the nested beans are read once, the getters may create them
+                out.append(type).append(" a").append(ordinal).append(" = ").append(x).append(", b").append(ordinal)
+                        .append(" = ").append(y).append(";\n").indent(2);
+                x = "a" + ordinal;
+                y = "b" + ordinal;
+                out.append("if (").append(x).append(" != ").append(y).append(") {\n")
+                        .indent(3).append("if (").append(x).append(" == null || ").append(y).append(" == null) ")
+                        .append("changes.add(prefix + \"").append(property.name).append("\");\n")
+                        .indent(3).append("else ").append(property.nestedAccessor).append(".INSTANCE.diff(")
+                        .append(x).append(", ").append(y).append(", prefix + \"").append(property.name)
+                        .append(".\", changes, visited);\n")
+                        .indent(2).append("}");
+                out.newLine();
+                continue;
+            }
+            out.append("if (");
+            if (type.equals("float")) out.append("Float.compare(").append(x).append(", ").append(y).append(") != 0");
+            else if (type.equals("double"))
+                out.append("Double.compare(").append(x).append(", ").append(y).append(") != 0");
+            else if (PRIMITIVES.contains(type)) out.append(x).append(" != ").append(y);
+            else if (type.endsWith("[][]"))
+                out.append("!java.util.Arrays.deepEquals(").append(x).append(", ").append(y).append(")");
+            else if (type.endsWith("[]"))
+                out.append("!java.util.Arrays.equals(").append(x).append(", ").append(y).append(")");
+            else out.append("!same(").append(x).append(", ").append(y).append(")");
+            out.append(") changes.add(prefix + \"").append(property.name).append("\");");
+            out.newLine();
+        }
+        out.indent().append("}");
+        out.newLine();
+        out.indent().append("private static boolean same(Object a, Object b) {\n")
+                .indent(2).append("return a == b || (a != null && a.equals(b));\n")
+                .indent().append("}");
+        out.newLine();
+    }
+
+    /**
+     * expression reading the property of the bean variable, the getters throwing checked exceptions are called
+     * by the typed accessor methods wrapping them
+     */
+    private static String read(BeanProperty property, String bean) {
+        if (property.readChecked) return "get" + BeanMetadataGenerator.capitalize(property.name) + "(" + bean + ")";
+        return bean + "." + property.read;
+    }
+
+    /**
+     * statement writing the value to the "bean" variable, by the typed accessor method if the setter throws
+     * checked exceptions
+     */
+    private static void write(SourceWriter out, BeanProperty property, String value) throws IOException {
+        if (property.writeChecked)
+            out.append("set").append(BeanMetadataGenerator.capitalize(property.name)).append("(bean, ").append(value)
+                    .append(");");
+        else writeCode(out, property, value);
+    }
+
+    /**
+     * catch clauses of a call declaring checked exceptions, they are rethrown as UndeclaredThrowableException
+     */
+    private static void rethrowUnchecked(SourceWriter out) throws IOException {
+        out.append("\n").indent(2).append("catch (RuntimeException e) { throw e; }")
+                .append("\n").indent(2).append("catch (Error e) { throw e; }")
+                .append("\n").indent(2).append("catch (Throwable e) { throw new java.lang.reflect.UndeclaredThrowableException(e); }");
+    }
+
+    private static void writeCode(SourceWriter out, BeanProperty property, String value) throws IOException {
+        if (property.field) out.append("bean.").append(property.write).append(" = ").append(value).append(";");
+        else out.append("bean.").append(property.write).append("(").append(value).append(");");
+    }
+}
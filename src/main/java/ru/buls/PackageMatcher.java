@@ -0,0 +1,98 @@
+package ru.buls;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches qualified class names against the include and exclude patterns compiled into a character trie.
+ * A pattern matches a name starting with it, as {@link String#startsWith} does.
+ * {@code *} in a pattern stands for any characters within a name segment, {@code **} for any characters at all,
+ * e.g. {@code com.acme.*.model} matches {@code com.acme.shop.model.Order}.
+ * The results are cached by the name. Not thread safe.
+ */
+public class PackageMatcher {
+    private final Node root = new Node();
+    private final Map<String, Boolean> results = new HashMap<String, Boolean>();
+    private final boolean empty;
+
+    public PackageMatcher(Collection<String> patterns) {
+        boolean empty = true;
+        for (String pattern : patterns) {
+            add(pattern.trim());
+            empty = false;
+        }
+        this.empty = empty;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public boolean matches(String name) {
+        Boolean result = results.get(name);
+        if (result == null) results.put(name, result = matches(root, name, 0));
+        return result;
+    }
+
+    private void add(String pattern) {
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                    if (node.anything == null) node.anything = new Node();
+                    node = node.anything;
+                    i++;
+                } else {
+                    if (node.segment == null) node.segment = new Node();
+                    node = node.segment;
+                }
+            } else node = node.child(c, true);
+        }
+        node.terminal = true;
+    }
+
+    private static boolean matches(Node node, String name, int from) {
+        if (node.terminal) return true;
+        if (node.anything != null)
+            for (int i = from; i <= name.length(); i++)
+                if (matches(node.anything, name, i)) return true;
+        if (node.segment != null)
+            for (int i = from; i <= name.length(); i++) {
+                if (matches(node.segment, name, i)) return true;
+                if (i < name.length() && name.charAt(i) == '.') break;
+            }
+        if (from < name.length()) {
+            Node child = node.child(name.charAt(from), false);
+            if (child != null) return matches(child, name, from + 1);
+        }
+        return false;
+    }
+
+    private static class Node {
+        char[] chars = new char[0];
+        Node[] children = new Node[0];
+        /**
+         * children of the * and ** wildcards
+         */
+        Node segment;
+        Node anything;
+        boolean terminal;
+
+        Node child(char c, boolean create) {
+            for (int i = 0; i < chars.length; i++) if (chars[i] == c) return children[i];
+            if (!create) return null;
+            char[] newChars = new char[chars.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(chars, 0, newChars, 0, chars.length);
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            Node child = new Node();
+            newChars[chars.length] = c;
+            newChildren[children.length] = child;
+            chars = newChars;
+            children = newChildren;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.buls;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import java.util.*;
+
+import static java.util.Collections.unmodifiableMap;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Per round cache of the bean properties.
+ * Every type is scanned by {@link BeanMetadataGenerator#populate} once,
+ * the property maps of subtypes are composed from the cached entries of their supertypes.
+ * Must not be kept between rounds.
+ */
+public class PropertyIndex {
+    private final Set<? extends Element> elements;
+    private final Map<TypeElement, Map<String, TypeElement>> own = new HashMap<TypeElement, Map<String, TypeElement>>();
+    private final Map<TypeElement, Set<String>> inherited = new HashMap<TypeElement, Set<String>>();
+    private final Map<TypeElement, Map<String, TypeElement>> properties = new HashMap<TypeElement, Map<String, TypeElement>>();
+    private final Map<TypeElement, Map<String, TypeElement>> allProperties = new HashMap<TypeElement, Map<String, TypeElement>>();
+
+    public PropertyIndex(Set<? extends Element> elements) {
+        this.elements = elements;
+    }
+
+    public Set<? extends Element> getElements() {
+        return elements;
+    }
+
+    /**
+     * properties declared by the type itself
+     */
+    public Map<String, TypeElement> own(TypeElement type) {
+        Map<String, TypeElement> result = own.get(type);
+        if (result == null) {
+            Map<String, TypeElement> populated = new LinkedHashMap<String, TypeElement>();
+            BeanMetadataGenerator.populate(populated, type, elements);
+            own.put(type, result = unmodifiableMap(populated));
+        }
+        return result;
+    }
+
+    /**
+     * names of the properties declared by the superclasses of the type
+     */
+    public Set<String> inherited(TypeElement type) {
+        Set<String> result = inherited.get(type);
+        if (result == null) {
+            Set<String> names = new HashSet<String>();
+            TypeElement superElem = superclass(type);
+            if (superElem != null) {
+                names.addAll(own(superElem).keySet());
+                names.addAll(inherited(superElem));
+            }
+            inherited.put(type, result = unmodifiableSet(names));
+        }
+        return result;
+    }
+
+    /**
+     * the same as {@link BeanMetadataGenerator#properties}
+     */
+    public Map<String, TypeElement> properties(TypeElement type) {
+        Map<String, TypeElement> result = properties.get(type);
+        if (result == null) {
+            Map<String, TypeElement> fromSelf = own(type);
+            Set<String> fromSuperClass = inherited(type);
+            Map<String, TypeElement> composed = new LinkedHashMap<String, TypeElement>();
+            for (TypeMirror i : type.getInterfaces()) {
+                TypeElement iElem = typeElement(i);
+                if (iElem == null) continue;
+                Map<String, TypeElement> fromIface = own(iElem);
+                for (String property : fromIface.keySet())
+                    if (!composed.containsKey(property)) composed.put(property, fromIface.get(property));
+            }
+            composed.keySet().removeAll(fromSelf.keySet());
+            composed.keySet().removeAll(fromSuperClass);
+            composed.putAll(fromSelf);
+            properties.put(type, result = unmodifiableMap(composed));
+        }
+        return result;
+    }
+
+    /**
+     * the same as {@link BeanMetadataGenerator#allProperties}
+     */
+    public Map<String, TypeElement> allProperties(TypeElement type) {
+        Map<String, TypeElement> result = allProperties.get(type);
+        if (result == null) {
+            Map<String, TypeElement> composed = new LinkedHashMap<String, TypeElement>();
+            TypeElement superElem = superclass(type);
+            if (superElem != null) composed.putAll(allProperties(superElem));
+            Map<String, TypeElement> fromType = properties(type);
+            for (String property : fromType.keySet())
+                if (!composed.containsKey(property)) composed.put(property, fromType.get(property));
+            allProperties.put(type, result = unmodifiableMap(composed));
+        }
+        return result;
+    }
+
+    private static TypeElement superclass(TypeElement type) {
+        TypeElement superElem = typeElement(type.getSuperclass());
+        return superElem == null || BeanMetadataGenerator.isObjectClass(superElem) ? null : superElem;
+    }
+
+    private static TypeElement typeElement(TypeMirror type) {
+        if (type instanceof DeclaredType) {
+            Element element = ((DeclaredType) type).asElement();
+            if (element instanceof TypeElement) return (TypeElement) element;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+package ru.buls;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams generated source text to a {@link Writer} through a buffer reused by all the generated files.
+ * The text is appended piece by piece, so no intermediate strings of the whole class are built.
+ * Not thread safe, one instance per thread.
+ */
+public class SourceWriter implements Appendable {
+    private static final int CHUNK = 8192;
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    private final StringBuilder buffer = new StringBuilder(CHUNK * 2);
+    private final char[] chunk = new char[CHUNK * 2];
+    private final String indent;
+    private Writer target;
+    private long written;
+
+    public SourceWriter(String indent) {
+        this.indent = indent;
+    }
+
+    /**
+     * starts writing of a file, the previous one must be closed
+     */
+    public SourceWriter open(Writer target) {
+        if (this.target != null) throw new IllegalStateException("previous file is not closed");
+        this.target = target;
+        return this;
+    }
+
+    public boolean isOpen() {
+        return target != null;
+    }
+
+    public SourceWriter append(CharSequence csq) throws IOException {
+        buffer.append(csq);
+        return flushIfFull();
+    }
+
+    public SourceWriter append(CharSequence csq, int start, int end) throws IOException {
+        buffer.append(csq, start, end);
+        return flushIfFull();
+    }
+
+    public SourceWriter append(char c) throws IOException {
+        buffer.append(c);
+        return flushIfFull();
+    }
+
+    public SourceWriter append(int i) throws IOException {
+        buffer.append(i);
+        return flushIfFull();
+    }
+
+    public SourceWriter newLine() throws IOException {
+        return append(LINE_SEPARATOR);
+    }
+
+    public SourceWriter indent() throws IOException {
+        return append(indent);
+    }
+
+    public SourceWriter indent(int count) throws IOException {
+        for (int i = 0; i < count; i++) buffer.append(indent);
+        return flushIfFull();
+    }
+
+    /**
+     * writes the rest of the text and closes the target writer, the buffer is kept for the next file
+     */
+    public void close() throws IOException {
+        if (target == null) return;
+        try {
+            flush();
+            target.close();
+        } finally {
+            target = null;
+            buffer.setLength(0);
+        }
+    }
+
+    /**
+     * number of characters written by this instance
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    private SourceWriter flushIfFull() throws IOException {
+        if (buffer.length() >= CHUNK) flush();
+        return this;
+    }
+
+    private void flush() throws IOException {
+        int length = buffer.length();
+        for (int start = 0; start < length; start += chunk.length) {
+            int end = Math.min(length, start + chunk.length);
+            buffer.getChars(start, end, chunk, 0);
+            target.write(chunk, 0, end - start);
+        }
+        written += length;
+        buffer.setLength(0);
+    }
+}
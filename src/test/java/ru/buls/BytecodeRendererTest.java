@@ -0,0 +1,234 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the processor over a sample model with and without the bytecode option and checks that the class files
+ * have the members of the compiled sources and give the same paths.
+ */
+public class BytecodeRendererTest {
+    private static final String PACKAGE = "sample";
+    private static final String NODE = MetadataRenderer.JAVA_LANG + "." + MetadataRenderer.OBJECT_CLASS_NAME;
+    /**
+     * the navigation below the static roots is followed down to this depth
+     */
+    private static final int DEPTH = 3;
+
+    private static final String[][] MODEL = {
+            {"Named", "public interface Named { String getName(); }"},
+            {"Base", "public class Base { public long getId() { return 0; } }"},
+            {"Country", "public class Country { public String getCode() { return null; } }"},
+            {"Address", "public class Address { public String getCity() { return null; }"
+                    + " public String getZipCode() { return null; } public Country getCountry() { return null; } }"},
+            {"Order", "public class Order { public double getTotal() { return 0; } public Person getCustomer() { return null; } }"},
+            {"Person", "public class Person extends Base implements Named { public String nickname;"
+                    + " public String getName() { return null; } public int getAge() { return 0; }"
+                    + " public boolean isActive() { return false; } public Address getAddress() { return null; }"
+                    + " public Person getManager() { return null; } public java.util.List<Order> getOrders() { return null; }"
+                    + " public java.util.Map<String, Address> getAddresses() { return null; }"
+                    + " public Order[] getArchived() { return null; } public String[] getTags() { return null; } }"},
+            {"Employee", "public class Employee extends Person { public long getSalary() { return 0; } }"}
+    };
+
+    @Test
+    public void classFilesHaveTheMembersOfTheSources() throws Exception {
+        File work = createTempDir("bean-metadata-test");
+        try {
+            List<File> sources = writeModel(new File(work, "src"));
+            File sourceMode = compile(sources, new File(work, "sources"), false);
+            File bytecodeMode = compile(sources, new File(work, "bytecode"), true);
+
+            Set<String> metadataClasses = generatedSources(new File(sourceMode, "gen"));
+            assertFalse(metadataClasses.isEmpty());
+            assertTrue("the bytecode mode generates sources " + generatedSources(new File(bytecodeMode, "gen")),
+                    generatedSources(new File(bytecodeMode, "gen")).equals(Collections.singleton(NODE)));
+
+            ClassLoader fromSources = loader(new File(sourceMode, "classes"));
+            ClassLoader fromClassFiles = loader(new File(bytecodeMode, "classes"));
+            for (String className : metadataClasses) {
+                assertEquals(className, members(fromSources.loadClass(className)),
+                        members(fromClassFiles.loadClass(className)));
+                if (className.startsWith(PACKAGE + "." + BeanMetadataGenerator.STATIC_PREFIX))
+                    assertEquals(className, paths(fromSources, className), paths(fromClassFiles, className));
+            }
+        } finally {
+            delete(work);
+        }
+    }
+
+    private static List<File> writeModel(File src) throws IOException {
+        File dir = new File(src, PACKAGE);
+        if (!dir.mkdirs()) throw new IOException("cannot create " + dir);
+        List<File> result = new ArrayList<File>();
+        for (String[] type : MODEL) {
+            File file = new File(dir, type[0] + ".java");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write("package " + PACKAGE + ";\n" + type[1] + "\n");
+            } finally {
+                writer.close();
+            }
+            result.add(file);
+        }
+        return result;
+    }
+
+    private static File compile(List<File> sources, File out, boolean bytecode) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) throw new IllegalStateException("no system java compiler, run on a JDK");
+        File gen = new File(out, "gen");
+        File classes = new File(out, "classes");
+        if (!gen.mkdirs() || !classes.mkdirs()) throw new IOException("cannot create " + out);
+
+        List<String> options = new ArrayList<String>(Arrays.asList("-Ainclude=" + PACKAGE, "-ApathConstantsDepth=2",
+                "-s", gen.getPath(), "-d", classes.getPath(), "-nowarn"));
+        if (bytecode) options.add("-Abytecode=true");
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(new BeanMetadataGenerator()));
+            if (!task.call()) throw new IllegalStateException("compilation failed: " + diagnostics.getDiagnostics());
+        } finally {
+            fileManager.close();
+        }
+        return out;
+    }
+
+    /**
+     * qualified names of the generated sources
+     */
+    private static Set<String> generatedSources(File gen) {
+        Set<String> result = new TreeSet<String>();
+        collect(gen, "", result);
+        return result;
+    }
+
+    private static void collect(File dir, String packagePrefix, Set<String> result) {
+        File[] children = dir.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) collect(child, packagePrefix + name + ".", result);
+            else if (name.endsWith(".java")) result.add(packagePrefix + name.substring(0, name.length() - 5));
+        }
+    }
+
+    private static ClassLoader loader(File classes) throws IOException {
+        return new URLClassLoader(new URL[]{classes.toURI().toURL()}, null);
+    }
+
+    /**
+     * the declaration and the members of the class as javap lists them, in the name order
+     */
+    private static List<String> members(Class<?> type) throws IllegalAccessException {
+        List<String> result = new ArrayList<String>();
+        Class<?> superclass = type.getSuperclass();
+        result.add(Modifier.toString(type.getModifiers()) + " " + type.getName()
+                + " extends " + (superclass != null ? superclass.getName() : null)
+                + " implements " + names(type.getInterfaces()));
+        List<String> members = new ArrayList<String>();
+        for (Field field : type.getDeclaredFields()) {
+            if (field.isSynthetic()) continue;
+            String member = Modifier.toString(field.getModifiers()) + " " + field.getType().getName() + " " + field.getName();
+            int constant = Modifier.STATIC | Modifier.FINAL;
+            if ((field.getModifiers() & constant) == constant && field.getType() == String.class) {
+                field.setAccessible(true);
+                member += " = " + field.get(null);
+            }
+            members.add(member);
+        }
+        for (Constructor<?> constructor : type.getDeclaredConstructors())
+            if (!constructor.isSynthetic())
+                members.add(Modifier.toString(constructor.getModifiers()) + " <init>(" + names(constructor.getParameterTypes()) + ")");
+        for (Method method : type.getDeclaredMethods())
+            if (!method.isSynthetic())
+                members.add(Modifier.toString(method.getModifiers()) + " " + method.getReturnType().getName() + " "
+                        + method.getName() + "(" + names(method.getParameterTypes()) + ")");
+        Collections.sort(members);
+        result.addAll(members);
+        return result;
+    }
+
+    private static String names(Class<?>[] types) {
+        StringBuilder result = new StringBuilder();
+        for (Class<?> type : types) {
+            if (result.length() > 0) result.append(", ");
+            result.append(type.getName());
+        }
+        return result.toString();
+    }
+
+    /**
+     * the path constants of the static class and the paths of the nodes reached by its navigation methods
+     */
+    private static Map<String, String> paths(ClassLoader loader, String className) throws Exception {
+        Class<?> node = loader.loadClass(NODE);
+        Class<?> type = loader.loadClass(className);
+        Map<String, String> result = new TreeMap<String, String>();
+        for (Field field : type.getFields())
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class)
+                result.put(field.getName(), (String) field.get(null));
+        for (Method method : type.getMethods())
+            if (Modifier.isStatic(method.getModifiers()) && node.isAssignableFrom(method.getReturnType())) {
+                String name = method.getName() + arguments(method);
+                navigate(node, name, method.invoke(null, arguments(method.getParameterTypes())), 1, result);
+            }
+        return result;
+    }
+
+    private static void navigate(Class<?> node, String name, Object value, int depth, Map<String, String> result)
+            throws Exception {
+        result.put(name, value.toString());
+        if (depth == DEPTH) return;
+        for (Field field : value.getClass().getFields())
+            if (!Modifier.isStatic(field.getModifiers()) && field.getType() == String.class)
+                result.put(name + "." + field.getName(), (String) field.get(value));
+        for (Method method : value.getClass().getMethods())
+            if (!Modifier.isStatic(method.getModifiers()) && node.isAssignableFrom(method.getReturnType()))
+                navigate(node, name + "." + method.getName() + arguments(method),
+                        method.invoke(value, arguments(method.getParameterTypes())), depth + 1, result);
+    }
+
+    private static String arguments(Method method) {
+        return Arrays.asList(arguments(method.getParameterTypes())).toString();
+    }
+
+    /**
+     * an index of the cached segments or a map key with a dot
+     */
+    private static Object[] arguments(Class<?>[] parameterTypes) {
+        if (parameterTypes.length == 0) return new Object[0];
+        if (parameterTypes[0] == int.class) return new Object[]{2};
+        return new Object[]{"a.b"};
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("cannot create " + dir);
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the caching resolver reads the paths by the generated accessors, falls back to the reflective
+ * resolver for the paths they do not cover and evicts the readers not hit since the clock hand passed them.
+ */
+public class CachingResolverTest {
+    private static final String[][] MODEL = {
+            {"sample.Address", "public class Address { private String city;"
+                    + " public String getCity() { return city; } public void setCity(String city) { this.city = city; } }"},
+            {"sample.Order", "public class Order { public double getTotal() { return 2.5; } }"},
+            {"sample.Person", "public class Person { private String name; private Address address;"
+                    + " private java.util.List<Order> orders;"
+                    + " public String getName() { return name; } public void setName(String name) { this.name = name; }"
+                    + " public Address getAddress() { return address; }"
+                    + " public void setAddress(Address address) { this.address = address; }"
+                    + " public java.util.List<Order> getOrders() { return orders; }"
+                    + " public void setOrders(java.util.List<Order> orders) { this.orders = orders; } }"},
+            {"plain.Holder", "public class Holder { public sample.Person getOwner() { return owner; }"
+                    + " public sample.Person owner; }"},
+            {"check.Check", "import sample.*; import plain.*; import javax.metadata.*; public class Check {"
+                    + " static Person person() {"
+                    + "   Person person = new Person(); person.setName(\"bob\"); Address address = new Address();"
+                    + "   address.setCity(\"Tula\"); person.setAddress(address);"
+                    + "   person.setOrders(java.util.Arrays.asList(new Order(), new Order())); return person; }"
+                    + " public static Object accessors() {"
+                    + "   CachingResolver resolver = new CachingResolver(new ReflectiveResolver(), 16); Person person = person();"
+                    + "   PropertyReader reader = resolver.resolve(Person.class, \"address.city\");"
+                    + "   return reader.getClass().getSimpleName() + \" \" + reader.get(person) + \" \""
+                    + "     + resolver.get(person, \"address.city\") + \" \" + resolver.get(person, \"orders[1].total\") + \" \""
+                    + "     + resolver.hits() + \" \" + resolver.misses() + \" \" + resolver.fallbacks(); }"
+                    + " public static Object fallbacks() {"
+                    + "   CachingResolver resolver = new CachingResolver(new ReflectiveResolver(), 16); Holder holder = new Holder();"
+                    + "   holder.owner = person();"
+                    + "   return resolver.get(holder, \"owner.address.city\") + \" \" + resolver.resolve(Person.class, \"orders[x]\")"
+                    + "     + \" \" + resolver.resolve(Person.class, \"orders[-1]\") + \" \" + resolver.fallbacks(); }"
+                    + " public static Object unknown() { return new CachingResolver(new ReflectiveResolver(), 16).get(person(), \"nope\"); }"
+                    + " public static Object eviction() {"
+                    + "   CachingResolver resolver = new CachingResolver(new ReflectiveResolver(), 3);"
+                    + "   resolver.resolve(Person.class, \"name\"); resolver.resolve(Person.class, \"address\");"
+                    + "   resolver.resolve(Person.class, \"orders\");"
+                    + "   resolver.resolve(Person.class, \"name\"); resolver.resolve(Person.class, \"address\");"
+                    + "   resolver.resolve(Person.class, \"address.city\"); long misses = resolver.misses();"
+                    + "   resolver.resolve(Person.class, \"name\"); resolver.resolve(Person.class, \"address\");"
+                    + "   resolver.resolve(Person.class, \"address.city\");"
+                    + "   String kept = resolver.size() + \" \" + (resolver.misses() - misses);"
+                    + "   resolver.resolve(Person.class, \"orders\");"
+                    + "   return kept + \" \" + (resolver.misses() - misses) + \" \" + resolver.size(); }"
+                    + " public static Object indexes() {"
+                    + "   CachingResolver resolver = new CachingResolver(new ReflectiveResolver(), 3);"
+                    + "   for (int i = 0; i < 10; i++) resolver.resolve(Person.class, \"orders[\" + i + \"]\");"
+                    + "   return resolver.size() + \" \" + (resolver.resolve(Person.class, \"name\") == resolver.resolve(Person.class, \"name\")); }"
+                    + " }"}
+    };
+
+    @Test
+    public void pathsAreReadByTheAccessors() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            //the indexed segments are followed by the accessor of the elements, not by the fallback
+            assertEquals("Getter Tula Tula 2.5 1 2 0", model.call("check.Check", "accessors"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void otherPathsFallBack() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            //the unresolved indexes are asked of the fallback too
+            assertEquals("Tula null null 3", model.call("check.Check", "fallbacks"));
+            try {
+                model.call("check.Check", "unknown");
+                throw new AssertionError("an unknown property is read");
+            } catch (IllegalArgumentException e) {
+                assertEquals("unknown property nope of sample.Person", e.getMessage());
+            }
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void readersHitSinceTheHandPassedAreKept() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            //name and address are hit before address.city is added, so orders is evicted instead of them
+            assertEquals("3 0 1 3", model.call("check.Check", "eviction"));
+            assertEquals("3 true", model.call("check.Check", "indexes"));
+        } finally {
+            model.close();
+        }
+    }
+}
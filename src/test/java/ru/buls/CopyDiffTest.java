@@ -0,0 +1,87 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the accessors copy the writable properties and diff the beans property by property, following the
+ * nested beans and stopping at the bean graph cycles.
+ */
+public class CopyDiffTest {
+    private static final String[][] MODEL = {
+            {"sample.Address", "public class Address { private String city;"
+                    + " public String getCity() { return city; } public void setCity(String city) { this.city = city; } }"},
+            {"sample.Person", "public class Person { private String name; private int age; private Address address;"
+                    + " private Person friend; public static int addressReads;"
+                    + " public String getName() { return name; } public void setName(String name) { this.name = name; }"
+                    + " public int getAge() { return age; } public void setAge(int age) { this.age = age; }"
+                    + " public Address getAddress() { addressReads++; return address; }"
+                    + " public void setAddress(Address address) { this.address = address; }"
+                    + " public Person getFriend() { return friend; } public void setFriend(Person friend) { this.friend = friend; }"
+                    + " public String getId() { return name + age; } }"},
+            {"check.Check", "import sample.*; public class Check {"
+                    + " static Person person(String name, String city) {"
+                    + "   Person person = new Person(); person.setName(name); person.setAge(3);"
+                    + "   Address address = new Address(); address.setCity(city); person.setAddress(address);"
+                    + "   return person; }"
+                    + " public static Object copy() {"
+                    + "   Person from = person(\"bob\", \"Tula\"); from.setFriend(from); Person to = new Person();"
+                    + "   APerson.INSTANCE.copy(from, to);"
+                    + "   return APerson.INSTANCE.diff(from, to) + \" \" + (to.getAddress() == from.getAddress())"
+                    + "     + \" \" + to.getName() + \" \" + to.getAge() + \" \" + (to.getFriend() == from); }"
+                    + " public static Object changes() {"
+                    + "   return APerson.INSTANCE.diff(person(\"bob\", \"Tula\"), person(\"ann\", \"Omsk\")) + \" \""
+                    + "     + APerson.INSTANCE.diff(person(\"bob\", \"Tula\"), person(\"bob\", \"Tula\")); }"
+                    + " public static Object nullNested() {"
+                    + "   Person a = person(\"bob\", \"Tula\"); Person b = person(\"bob\", \"Tula\"); b.setAddress(null);"
+                    + "   return APerson.INSTANCE.diff(a, b) + \" \" + APerson.INSTANCE.diff(b, a); }"
+                    + " public static Object cycle() {"
+                    + "   Person a = person(\"bob\", \"Tula\"); Person b = person(\"bob\", \"Tula\"); a.setFriend(a); b.setFriend(b);"
+                    + "   String same = APerson.INSTANCE.diff(a, b).toString(); b.setAge(4);"
+                    + "   return same + \" \" + APerson.INSTANCE.diff(a, b); }"
+                    + " public static Object nestedCycle() {"
+                    + "   Person a = person(\"bob\", \"Tula\"); Person b = person(\"bob\", \"Tula\");"
+                    + "   Person c = person(\"ann\", \"Tula\"); a.setFriend(c); c.setFriend(a); b.setFriend(b);"
+                    + "   return APerson.INSTANCE.diff(a, b).toString(); }"
+                    + " public static Object reads() {"
+                    + "   Person a = person(\"bob\", \"Tula\"); Person b = person(\"bob\", \"Omsk\"); Person.addressReads = 0;"
+                    + "   APerson.INSTANCE.diff(a, b); return Person.addressReads; }"
+                    + " }"}
+    };
+
+    @Test
+    public void copySetsTheWritableProperties() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            //a shallow copy, the nested beans are shared
+            assertEquals("[] true bob 3 true", model.call("check.Check", "copy"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void diffReturnsTheChangedPaths() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            assertEquals("[name, address.city, id] []", model.call("check.Check", "changes"));
+            assertEquals("[address] [address]", model.call("check.Check", "nullNested"));
+            //the nested beans are read once per side
+            assertEquals(2, model.call("check.Check", "reads"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void diffStopsAtCycles() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            assertEquals("[] [age, id]", model.call("check.Check", "cycle"));
+            assertEquals("[friend.name, friend.id]", model.call("check.Check", "nestedCycle"));
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the tracking subclasses mark the properties changed by the setters and only them.
+ */
+public class DirtyTrackingTest {
+    private static final String[][] MODEL = {
+            {"sample.Address", "public class Address { private String city;"
+                    + " public String getCity() { return city; } public void setCity(String city) { this.city = city; } }"},
+            {"sample.Person", "public class Person { private String name; private int age; private Address address;"
+                    + " public String nickname;"
+                    + " public Person() { } public Person(String name) { setName(name); }"
+                    + " public String getName() { return name; } public void setName(String name) { this.name = name; }"
+                    + " public int getAge() { return age; } public void setAge(int age) { this.age = age; }"
+                    + " public void setAge(String age) { this.age = age.length(); }"
+                    + " public Address getAddress() { return address; }"
+                    + " public Person setAddress(Address address) { this.address = address; return this; } }"},
+            {"sample.Employee", "public class Employee extends Person { private long salary;"
+                    + " public long getSalary() { return salary; } public void setSalary(long salary) { this.salary = salary; } }"},
+            {"check.Check", "import sample.*; import javax.metadata.Tracked; public class Check {"
+                    + " public static Object tracked() {"
+                    + "   DPerson person = new DPerson(\"bob\"); String clean = person.isDirty() + \" \" + person.dirtyPaths();"
+                    + "   person.setAddress(new Address()).setName(\"ann\"); person.nickname = \"a\";"
+                    + "   return clean + \" \" + person.isDirty() + \" \" + person.dirtyPaths() + \" \" + person.isDirty(APerson.NAME)"
+                    + "     + \" \" + person.isDirty(APerson.AGE) + \" \" + person.isDirty(-1) + \" \" + person.isDirty(64); }"
+                    + " public static Object cleared() {"
+                    + "   DPerson person = new DPerson(); person.setName(\"ann\"); person.clearDirty();"
+                    + "   String cleared = person.isDirty() + \" \" + person.dirtyPaths(); person.setAge(3);"
+                    + "   return cleared + \" \" + person.dirtyPaths(); }"
+                    + " public static Object overload() {"
+                    + "   DPerson person = new DPerson(); person.setAge(\"abc\"); String other = person.dirtyPaths().toString();"
+                    + "   person.setAge(3); return other + \" \" + person.dirtyPaths() + \" \" + person.getAge(); }"
+                    + " public static Object inherited() {"
+                    + "   DEmployee employee = new DEmployee(); employee.setSalary(3); employee.setName(\"n\");"
+                    + "   return employee.dirtyPaths() + \" \" + (employee instanceof Tracked) + \" \" + employee.isDirty(AEmployee.SALARY); }"
+                    + " }"}
+    };
+
+    @Test
+    public void settersMarkTheirProperties() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true", "-AdirtyTracking=true");
+        try {
+            //the setters called by the constructor and the public fields are not tracked
+            assertEquals("false [] true [name, address] true false false false", model.call("check.Check", "tracked"));
+            assertEquals("false [] [age]", model.call("check.Check", "cleared"));
+            assertEquals("[name, salary] true true", model.call("check.Check", "inherited"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void onlyTheSetterOfThePropertyTypeIsTracked() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true", "-AdirtyTracking=true");
+        try {
+            assertEquals("[] [age] 3", model.call("check.Check", "overload"));
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the paths of the navigation methods of the list, array and map properties and their link to the
+ * metadata of the element beans.
+ */
+public class IndexedPathTest {
+    private static final String[][] MODEL = {
+            {"sample.Address", "public class Address { public String getCity() { return null; } }"},
+            {"sample.Order", "public class Order { public double getTotal() { return 0; }"
+                    + " public Person getCustomer() { return null; } }"},
+            {"sample.Person", "public class Person { public String getName() { return null; }"
+                    + " public java.util.List<Order> getOrders() { return null; }"
+                    + " public Order[] getArchived() { return null; }"
+                    + " public java.util.Map<String, Address> getAddresses() { return null; }"
+                    + " public String[] getTags() { return null; } }"},
+            {"check.Check", "import sample.*; public class Check {"
+                    + " public static Object listElement() { return SPerson.orders(2).total; }"
+                    + " public static Object uncachedIndex() { return SPerson.orders(1000).total; }"
+                    + " public static Object arrayElement() { return SPerson.archived(1).customer().name; }"
+                    + " public static Object mapValue() { return SPerson.addresses(\"a.b\").city; }"
+                    + " public static Object elementNavigation() { return SPerson.orders(0).customer().orders(3).toString(); }"
+                    + " public static Object elementType() { return SPerson.orders(0) instanceof POrder; }"
+                    + " public static Object nestedElement() { return new PPerson(\"owner\", null).archived(0).total; }"
+                    + " public static Object plainArray() { return SPerson.tags; }"
+                    + " }"}
+    };
+
+    @Test
+    public void indexedAndMappedSegmentsMakePaths() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample");
+        try {
+            assertEquals("orders[2].total", model.call("check.Check", "listElement"));
+            assertEquals("orders[1000].total", model.call("check.Check", "uncachedIndex"));
+            assertEquals("archived[1].customer.name", model.call("check.Check", "arrayElement"));
+            assertEquals("addresses(a.b).city", model.call("check.Check", "mapValue"));
+            assertEquals("owner.archived[0].total", model.call("check.Check", "nestedElement"));
+            assertEquals("tags", model.call("check.Check", "plainArray"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void elementsNavigateByTheirMetadata() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample");
+        try {
+            assertTrue((Boolean) model.call("check.Check", "elementType"));
+            assertEquals("orders[0].customer.orders[3]", model.call("check.Check", "elementNavigation"));
+        } finally {
+            model.close();
+        }
+    }
+}
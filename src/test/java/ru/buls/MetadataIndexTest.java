@@ -0,0 +1,48 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles a module against an upstream one and checks that the metadata index links the navigation to the
+ * metadata classes of the upstream beans instead of generating them again.
+ */
+public class MetadataIndexTest {
+    private static final String[][] UPSTREAM = {
+            {"sample.Address", "public class Address { public String getCity() { return null; } }"},
+            {"sample.Person", "public class Person { public String getName() { return null; }"
+                    + " public Address getAddress() { return null; } }"}
+    };
+    private static final String[][] DOWNSTREAM = {
+            {"shop.Cart", "public class Cart { public sample.Person getBuyer() { return null; }"
+                    + " public java.util.List<sample.Address> getDeliveries() { return null; } }"},
+            {"check.Check", "import shop.*; public class Check {"
+                    + " public static Object nested() { return SCart.buyer().address().city; }"
+                    + " public static Object indexed() { return SCart.deliveries(1).city; }"
+                    + " public static Object upstreamType() { return SCart.buyer().getClass().getName(); }"
+                    + " }"}
+    };
+
+    @Test
+    public void upstreamBeansAreLinked() throws Exception {
+        ModelCompilation upstream = new ModelCompilation(UPSTREAM, "-Ainclude=sample", "-Aindex=true");
+        try {
+            ModelCompilation model = new ModelCompilation(upstream, DOWNSTREAM, "-Ainclude=shop", "-Aindex=true");
+            try {
+                assertEquals("buyer.address.city", model.call("check.Check", "nested"));
+                assertEquals("deliveries[1].city", model.call("check.Check", "indexed"));
+                assertEquals("sample.PPerson", model.call("check.Check", "upstreamType"));
+                assertTrue(model.compiled("shop.PCart"));
+                assertFalse(model.compiled("sample.PPerson"));
+                assertFalse(model.compiled("javax.metadata.PObject"));
+            } finally {
+                model.close();
+            }
+        } finally {
+            upstream.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.buls;
+
+import javax.tools.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A test model compiled in process with the processor. The sources are written to a temporary directory,
+ * compiled together with the generated metadata and loaded by a class loader of their own, so the tests check
+ * the behavior of the generated classes by calling the static methods of a driver class of the model.
+ */
+final class ModelCompilation {
+    private final File work;
+    private final File classes;
+    private final ClassLoader loader;
+
+    /**
+     * @param sources pairs of the qualified class name and the source following the package declaration
+     * @param options processor options, e.g. -Ainclude=sample
+     */
+    ModelCompilation(String[][] sources, String... options) throws IOException {
+        this(null, sources, options);
+    }
+
+    /**
+     * @param upstream the compiled module on the class path of this one, its classes are loaded by the parent loader
+     */
+    ModelCompilation(ModelCompilation upstream, String[][] sources, String... options) throws IOException {
+        work = createTempDir("bean-metadata-test");
+        classes = new File(work, "classes");
+        try {
+            List<String> allOptions = new ArrayList<String>(Arrays.asList(options));
+            //the test class path is left out, the model sees the upstream module only
+            allOptions.addAll(Arrays.asList("-classpath", upstream != null ? upstream.classes.getPath() : classes.getPath()));
+            compile(write(new File(work, "src"), sources), classes, allOptions);
+            loader = new URLClassLoader(new URL[]{classes.toURI().toURL()}, upstream != null ? upstream.loader : null);
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    Class<?> load(String className) throws ClassNotFoundException {
+        return loader.loadClass(className);
+    }
+
+    /**
+     * the class file is written by this compilation, not taken from the upstream module
+     */
+    boolean compiled(String className) {
+        return new File(classes, className.replace('.', File.separatorChar) + ".class").isFile();
+    }
+
+    /**
+     * result of the static method without parameters, the exceptions it throws are rethrown as they are
+     */
+    Object call(String className, String method) throws Exception {
+        Method target = load(className).getMethod(method);
+        try {
+            return target.invoke(null);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    void close() {
+        delete(work);
+    }
+
+    private static List<File> write(File src, String[][] sources) throws IOException {
+        List<File> result = new ArrayList<File>();
+        for (String[] source : sources) {
+            String className = source[0];
+            int dot = className.lastIndexOf('.');
+            File dir = new File(src, className.substring(0, dot).replace('.', File.separatorChar));
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("cannot create " + dir);
+            File file = new File(dir, className.substring(dot + 1) + ".java");
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                writer.write("package " + className.substring(0, dot) + ";\n" + source[1] + "\n");
+            } finally {
+                writer.close();
+            }
+            result.add(file);
+        }
+        return result;
+    }
+
+    private static void compile(List<File> sources, File classes, List<String> options) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) throw new IllegalStateException("no system java compiler, run on a JDK");
+        File gen = new File(classes.getParentFile(), "gen");
+        if (!gen.mkdirs() || !classes.mkdirs()) throw new IOException("cannot create " + classes);
+
+        options = new ArrayList<String>(options);
+        options.addAll(Arrays.asList("-s", gen.getPath(), "-d", classes.getPath(), "-nowarn"));
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(sources));
+            task.setProcessors(Collections.singletonList(new BeanMetadataGenerator()));
+            if (!task.call()) throw new IllegalStateException("compilation failed: " + diagnostics.getDiagnostics());
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private static File createTempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("cannot create " + dir);
+        return dir;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+}
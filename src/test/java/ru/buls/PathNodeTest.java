@@ -0,0 +1,60 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the metadata nodes behave as the char sequences of their full paths.
+ */
+public class PathNodeTest {
+    private static final String[][] MODEL = {
+            {"sample.Country", "public class Country { public String getCode() { return null; } }"},
+            {"sample.Address", "public class Address { public String getCity() { return null; }"
+                    + " public Country getCountry() { return null; } }"},
+            {"sample.Person", "public class Person { public String getName() { return null; }"
+                    + " public Address getAddress() { return null; } public Person getManager() { return null; } }"},
+            {"check.Check", "import sample.*; import javax.metadata.PObject; public class Check {"
+                    + " public static Object fullPath() { return SPerson.manager().address().country().toString(); }"
+                    + " public static Object length() { return SPerson.manager().address().country().length(); }"
+                    + " public static Object charAt() { return SPerson.manager().address().charAt(8); }"
+                    + " public static Object subSequence() { return SPerson.manager().address().subSequence(8, 15).toString(); }"
+                    + " public static Object field() { return SPerson.manager().address().city; }"
+                    + " public static Object equalNodes() { return SPerson.address().country().equals(new PPerson(\"\", null).address().country()); }"
+                    + " public static Object equalHashes() { return SPerson.address().country().hashCode() == \"address.country\".hashCode(); }"
+                    + " public static Object sameHashByParent() { return new PObject(\"country\", SPerson.address()).hashCode() == SPerson.address().country().hashCode(); }"
+                    + " public static Object differentNodes() { return SPerson.address().equals(SPerson.manager()); }"
+                    + " public static Object contentEquals() { return \"manager.name\".contentEquals(new PObject(\"name\", SPerson.manager())); }"
+                    + " }"}
+    };
+
+    @Test
+    public void nodesAreTheirFullPaths() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample");
+        try {
+            assertEquals("manager.address.country", model.call("check.Check", "fullPath"));
+            assertEquals("manager.address.country".length(), model.call("check.Check", "length"));
+            assertEquals('a', model.call("check.Check", "charAt"));
+            assertEquals("address", model.call("check.Check", "subSequence"));
+            assertEquals("manager.address.city", model.call("check.Check", "field"));
+            assertTrue((Boolean) model.call("check.Check", "contentEquals"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void equalPathsMakeEqualNodes() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample");
+        try {
+            assertTrue((Boolean) model.call("check.Check", "equalNodes"));
+            assertTrue((Boolean) model.call("check.Check", "equalHashes"));
+            assertTrue((Boolean) model.call("check.Check", "sameHashByParent"));
+            assertFalse((Boolean) model.call("check.Check", "differentNodes"));
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the generated parsers accept the property paths of the bean and reject any other string.
+ */
+public class PathParserTest {
+    private static final String[][] MODEL = {
+            {"sample.Address", "public class Address { public String getCity() { return null; } }"},
+            {"sample.Order", "public class Order { public double getTotal() { return 0; }"
+                    + " public Person getCustomer() { return null; } }"},
+            {"sample.Person", "public class Person { public String getName() { return null; }"
+                    + " public String getNameHint() { return null; } public Address getAddress() { return null; }"
+                    + " public java.util.List<Order> getOrders() { return null; }"
+                    + " public java.util.Map<String, Address> getAddresses() { return null; }"
+                    + " public String[] getTags() { return null; } }"},
+            {"sample.Employee", "public class Employee extends Person { public Address getOffice() { return null; } }"},
+            {"check.Check", "import sample.*; import javax.metadata.PObject; import java.util.*; public class Check {"
+                    + " public static Map<String, String> parsed() {"
+                    + "   String[] paths = {\"name\", \"nameHint\", \"nam\", \"names\", \"address\", \"address.city\","
+                    + "     \"address.\", \"address.cityx\", \"orders[3].total\", \"orders[12]\", \"orders[x]\", \"orders[]\","
+                    + "     \"orders[3\", \"addresses(a.b).city\", \"addresses(\", \"tags\", \"tags[0]\","
+                    + "     \"orders[1].customer.address.city\", \"\", \".\", \"name.x\"};"
+                    + "   Map<String, String> result = new HashMap<String, String>();"
+                    + "   for (String path : paths) { PObject node = SPerson.parse(path);"
+                    + "     result.put(path, node == null ? null : node.getClass().getSimpleName() + \" \" + node); }"
+                    + "   return result; }"
+                    + " public static Object sameAsNavigation() {"
+                    + "   return SPerson.parse(\"orders[3].customer.address\").equals(SPerson.orders(3).customer().address()); }"
+                    + " public static Object inherited() { return SEmployee.parse(\"office.city\") + \" \" + SEmployee.parse(\"name\"); }"
+                    + " public static Object notInherited() { return SPerson.parse(\"office\"); }"
+                    + " }"}
+    };
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void propertyPathsAreParsed() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aparsers=true");
+        try {
+            Map<String, String> parsed = (Map<String, String>) model.call("check.Check", "parsed");
+            assertEquals("PObject name", parsed.get("name"));
+            assertEquals("PObject nameHint", parsed.get("nameHint"));
+            assertEquals("PAddress address", parsed.get("address"));
+            assertEquals("PObject address.city", parsed.get("address.city"));
+            assertEquals("PObject orders[3].total", parsed.get("orders[3].total"));
+            assertEquals("POrder orders[12]", parsed.get("orders[12]"));
+            assertEquals("PObject addresses(a.b).city", parsed.get("addresses(a.b).city"));
+            assertEquals("PObject tags", parsed.get("tags"));
+            assertEquals("PObject orders[1].customer.address.city", parsed.get("orders[1].customer.address.city"));
+            assertTrue((Boolean) model.call("check.Check", "sameAsNavigation"));
+            assertEquals("office.city name", model.call("check.Check", "inherited"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void otherStringsAreRejected() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aparsers=true");
+        try {
+            Map<String, String> parsed = (Map<String, String>) model.call("check.Check", "parsed");
+            for (String path : new String[]{"nam", "names", "address.", "address.cityx", "orders[x]", "orders[]",
+                    "orders[3", "addresses(", "tags[0]", "", ".", "name.x"}) {
+                assertTrue(path, parsed.containsKey(path));
+                assertNull(path, parsed.get(path));
+            }
+            assertNull(model.call("check.Check", "notInherited"));
+        } finally {
+            model.close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the path ids are dense, equal for the equal nodes and looked up without registering new paths.
+ */
+public class PathRegistryTest {
+    private static final String[][] MODEL = {
+            {"sample.Country", "public class Country { public String getCode() { return null; } }"},
+            {"sample.Address", "public class Address { public String getCity() { return null; }"
+                    + " public Country getCountry() { return null; } }"},
+            {"sample.Person", "public class Person { public String getName() { return null; }"
+                    + " public Address getAddress() { return null; }"
+                    + " public java.util.List<Person> getFriends() { return null; }"
+                    + " public java.util.Map<String, Address> getAddresses() { return null; } }"},
+            {"check.Check", "import sample.*; import javax.metadata.*; public class Check {"
+                    + " public static Object root() { return new PPerson(\"\", null).pathId() == PathRegistry.ROOT; }"
+                    + " public static Object equalNodes() {"
+                    + "   int id = SPerson.address().country().pathId();"
+                    + "   return id == new PObject(\"address.country\", null).pathId()"
+                    + "     && id == new PObject(\"country\", new PObject(\"address\", null)).pathId()"
+                    + "     && id == new PObject(\"country\", new PPerson(\"\", null).address()).pathId(); }"
+                    + " public static Object paths() {"
+                    + "   return PathRegistry.path(SPerson.addresses(\"a.b\").country().pathId()) + \" \""
+                    + "     + PathRegistry.path(SPerson.friends(3).address().pathId()); }"
+                    + " public static Object dense() {"
+                    + "   int before = PathRegistry.size();"
+                    + "   int id = new PObject(\"z\", new PObject(\"y\", SPerson.address())).pathId();"
+                    + "   return before + \" \" + id + \" \" + PathRegistry.size(); }"
+                    + " public static Object lookup() {"
+                    + "   int id = SPerson.addresses(\"a.b\").pathId();"
+                    + "   int size = PathRegistry.size();"
+                    + "   return (PathRegistry.id(\"addresses(a.b)\") == id) + \" \" + PathRegistry.id(\"\") + \" \""
+                    + "     + PathRegistry.id(\"addresses(a.b).nope\") + \" \" + PathRegistry.id(\"nope\") + \" \""
+                    + "     + (PathRegistry.size() == size); }"
+                    + " public static Object concurrent() throws InterruptedException {"
+                    + "   final int[] sums = new int[4]; Thread[] threads = new Thread[sums.length];"
+                    + "   for (int t = 0; t < threads.length; t++) { final int n = t;"
+                    + "     threads[t] = new Thread() { public void run() {"
+                    + "       for (int i = 0; i < 500; i++) sums[n] += SPerson.friends(i).address().pathId(); } };"
+                    + "     threads[t].start(); }"
+                    + "   for (Thread thread : threads) thread.join();"
+                    + "   return sums[0] == sums[1] && sums[1] == sums[2] && sums[2] == sums[3]"
+                    + "     && PathRegistry.path(SPerson.friends(499).address().pathId()).equals(\"friends[499].address\"); }"
+                    + " public static Object unknownId() { return PathRegistry.path(PathRegistry.size()); }"
+                    + " }"}
+    };
+
+    @Test
+    public void equalNodesHaveTheSameId() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-ApathIds=true");
+        try {
+            assertTrue((Boolean) model.call("check.Check", "root"));
+            assertTrue((Boolean) model.call("check.Check", "equalNodes"));
+            assertEquals("addresses(a.b).country friends[3].address", model.call("check.Check", "paths"));
+            assertTrue((Boolean) model.call("check.Check", "concurrent"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void idsAreDense() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-ApathIds=true");
+        try {
+            //address, address.y and address.y.z are registered by the node, the last one gets the last id
+            String[] dense = ((String) model.call("check.Check", "dense")).split(" ");
+            int before = Integer.parseInt(dense[0]);
+            assertEquals(before + 2, Integer.parseInt(dense[1]));
+            assertEquals(before + 3, Integer.parseInt(dense[2]));
+            try {
+                model.call("check.Check", "unknownId");
+                throw new AssertionError("the id past the registered paths is accepted");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("unknown path id"));
+            }
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void lookupDoesNotRegister() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-ApathIds=true");
+        try {
+            assertEquals("true 0 -1 -1 true", model.call("check.Check", "lookup"));
+        } finally {
+            model.close();
+        }
+    }
+}
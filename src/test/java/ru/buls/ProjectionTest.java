@@ -0,0 +1,83 @@
+package ru.buls;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the projection reads every column of a bean, calls the getters of the shared path prefixes once and
+ * reuses the row array.
+ */
+public class ProjectionTest {
+    private static final String[][] MODEL = {
+            {"sample.Address", "public class Address { private String city; private String zipCode;"
+                    + " public String getCity() { return city; } public void setCity(String city) { this.city = city; }"
+                    + " public String getZipCode() { return zipCode; }"
+                    + " public void setZipCode(String zipCode) { this.zipCode = zipCode; } }"},
+            {"sample.Person", "public class Person { private String name; private Address address;"
+                    + " public static int addressReads;"
+                    + " public String getName() { return name; } public void setName(String name) { this.name = name; }"
+                    + " public Address getAddress() { addressReads++; return address; }"
+                    + " public void setAddress(Address address) { this.address = address; } }"},
+            {"check.Check", "import sample.*; import javax.metadata.*; import java.util.*; public class Check {"
+                    + " static Projection projection() {"
+                    + "   return Projection.of(new PObject(SPerson.name, SPerson.ROOT), new PObject(SAddress.city, SPerson.address()),"
+                    + "     new PObject(SAddress.zipCode, SPerson.address())); }"
+                    + " static List<Person> people() {"
+                    + "   List<Person> people = new ArrayList<Person>();"
+                    + "   for (int i = 0; i < 3; i++) { Person person = new Person(); person.setName(\"p\" + i);"
+                    + "     if (i != 1) { Address address = new Address(); address.setCity(\"c\" + i);"
+                    + "       address.setZipCode(\"z\" + i); person.setAddress(address); }"
+                    + "     people.add(person); }"
+                    + "   return people; }"
+                    + " public static Object fill() {"
+                    + "   Projection projection = projection(); List<Person> people = people(); Person.addressReads = 0;"
+                    + "   Object[] row = new Object[projection.width()];"
+                    + "   String result = Arrays.toString(projection.fill(people.get(0), row));"
+                    + "   return result + \" \" + (projection.fill(people.get(1), row) == row) + \" \" + Arrays.toString(row)"
+                    + "     + \" \" + Person.addressReads; }"
+                    + " public static Object rows() {"
+                    + "   Projection projection = projection(); StringBuilder result = new StringBuilder(); Object[] first = null;"
+                    + "   for (Iterator<Object[]> rows = projection.rows(people().iterator()); rows.hasNext(); ) {"
+                    + "     Object[] row = rows.next(); if (first == null) first = row;"
+                    + "     result.append(Arrays.toString(row)).append(row == first ? \" \" : \"! \"); }"
+                    + "   return result.toString().trim(); }"
+                    + " public static Object otherBean() {"
+                    + "   return Projection.of(new PObject(SAddress.city, SPerson.address()), new PObject(SAddress.city, SAddress.ROOT)); }"
+                    + " }"}
+    };
+
+    @Test
+    public void sharedPrefixesAreReadOnce() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            //address.city and address.zipCode call getAddress() once per bean, a null address gives null columns
+            assertEquals("[p0, c0, z0] true [p1, null, null] 2", model.call("check.Check", "fill"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void rowsReuseTheArray() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            assertEquals("[p0, c0, z0] [p1, null, null] [p2, c2, z2]", model.call("check.Check", "rows"));
+        } finally {
+            model.close();
+        }
+    }
+
+    @Test
+    public void columnsOfOneBeanOnly() throws Exception {
+        ModelCompilation model = new ModelCompilation(MODEL, "-Ainclude=sample", "-Aaccessors=true");
+        try {
+            model.call("check.Check", "otherBean");
+            throw new AssertionError("the columns of different beans are projected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("path city is not of the bean of address.city", e.getMessage());
+        } finally {
+            model.close();
+        }
+    }
+}